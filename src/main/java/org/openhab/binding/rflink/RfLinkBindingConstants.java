@@ -31,12 +31,14 @@ public class RfLinkBindingConstants {
 
     public static final String BINDING_ID = "rflink";
     public static final String SERIAL_PORT = "serialPort";
+    public static final String HOST = "host";
     public static final String BRIDGE_ID = "bridgeId";
     public static final String DEVICE_ID = "deviceId";
 
     // List of all Bridge Type UIDs
     public static final String BRIDGE_TYPE_MANUAL_BRIDGE = "bridge";
     public final static int BAUD_RATE_DEFAULT = 57600;
+    public final static int TCP_PORT_DEFAULT = 1900;
 
     public final static ThingTypeUID BRIDGE_MANUAL = new ThingTypeUID(BINDING_ID, BRIDGE_TYPE_MANUAL_BRIDGE);
 
@@ -31,9 +31,95 @@ public class RfLinkBridgeConfiguration {
     // Serial port baud rate
     public int baudRate = RfLinkBindingConstants.BAUD_RATE_DEFAULT;
 
-    // keepAlive ping period
+    // Host name or IP address of a network gateway, used instead of the serial port when set
+    public String host;
+
+    // TCP port of a network gateway
+    public int port = RfLinkBindingConstants.TCP_PORT_DEFAULT;
+
+    // Recorded capture replayed instead of connecting to a gateway (load tests)
+    public String replayFile;
+
+    // Replay speed factor, 0 for maximum speed
+    public double replaySpeed = 1;
+
+    // keepAlive ping period: a PING is sent when nothing was received during this period
     public int keepAlivePeriod = 0;
 
+    // Time (s) without any received frame after which the connection is considered stalled and reopened, 0 to disable
+    public int rxSilenceTimeout = 0;
+
+    // Time (ms) during which the repeated copies of a device frame are dropped, 0 to disable
+    public int dedupeWindow = 0;
+
+    // Number of received frames waiting for their dispatch, 0 to dispatch them from the reading thread (serial
+    // gateways only, a network gateway always has a receive queue)
+    public int receiveQueueSize = 256;
+
+    // How the dispatch thread waits for received frames: blocking, sleeping or yielding
+    public String receiveWaitStrategy = "blocking";
+
+    // What to do with a received frame when the receive queue is full: dropOldest, dropNewest or block
+    public String receiveOverflowPolicy = "dropOldest";
+
+    // How the listeners of the received messages are called: serial (from the dispatch thread), striped (in
+    // parallel per device) or isolated (each listener from its own mailbox, drained by a shared pool of threads)
+    public String dispatchMode = "serial";
+
+    // Number of threads of the striped or isolated dispatch, 0 for the number of processors
+    public int dispatchThreads = 0;
+
+    // Number of messages waiting for each listener in isolated dispatch, further messages are dropped
+    public int mailboxSize = 100;
+
+    // Maximal number of devices whose last state is kept, the least recently used ones are forgotten first
+    public int stateStoreSize = 1000;
+
+    // Time (h) after which the last state of a device neither heard nor used is forgotten, 0 to keep it
+    public int stateStoreIdleTimeout = 168;
+
+    // Interval (s) between writes of the last known states to a file restoring them at startup, 0 to disable
+    public int snapshotInterval = 60;
+
+    // Size (KB) beyond which the file of the last known states is compacted
+    public int snapshotMaxSize = 256;
+
+    // Age (min) beyond which a last known state doesn't answer a refresh, 0 for no limit
+    public int refreshMaxAge = 60;
+
     // Prevent unknown devices from being added to the inbox
     public boolean disableDiscovery;
+
+    // Comma separated protocols discovered exclusively, all protocols when empty
+    public String discoveryAllowedProtocols;
+
+    // Comma separated protocols never discovered
+    public String discoveryDeniedProtocols;
+
+    // Comma separated device ids never discovered
+    public String discoveryIgnoredDevices;
+
+    // Number of frames a device must send before being added to the inbox
+    public int discoveryMinSightings = 1;
+
+    // Maximal number of devices added to the inbox per minute, 0 for no limit
+    public int discoveryRateLimit = 0;
+
+    // Maximal time (ms) to wait for the gateway to acknowledge a frame, 0 for a fixed delay between frames
+    public int ackTimeout = 0;
+
+    // Waiting time (ms) after which a queued message is sent regardless of its priority
+    public int transmitAgingThreshold = 1000;
+
+    // Number of commands kept while the gateway is disconnected, 0 to drop them
+    public int offlineBufferSize = 0;
+
+    // Time (s) after which a command kept while the gateway is disconnected is dropped, 0 for no limit
+    public int offlineBufferTtl = 30;
+
+    // Keep only the latest command per device and channel while the gateway is disconnected
+    public boolean offlineBufferCollapse = false;
+
+    // Period (s) of the statistics published as bridge properties, 0 to disable
+    public int statisticsInterval = 0;
 }
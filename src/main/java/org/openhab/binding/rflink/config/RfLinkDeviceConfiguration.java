@@ -29,6 +29,21 @@ public class RfLinkDeviceConfiguration {
     // reverse commands on the device
     public boolean isCommandReversed = Boolean.FALSE;
 
+    // Comma separated channel=deadband list: numeric states closer than the deadband to the published one are unchanged
+    public String deadbands;
+
+    // Time (s) after which an unchanged state is published again, 0 for never (or every state without deadbands)
+    public int maxQuietInterval = 0;
+
+    // Aggregation of the numeric samples: none, last, mean, min or max
+    public String aggregation = "none";
+
+    // Time (s) of the aggregation window
+    public int aggregationWindow = 60;
+
+    // Samples of instant power or gust above this value are published at once, 0 to disable
+    public double spikeThreshold = 0;
+
     @Override
     public String toString() {
         return "RfLinkDeviceConfiguration [deviceId=" + deviceId + "]";
@@ -0,0 +1,333 @@
+/**
+ * Copyright (c) 2010-2023 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.rflink.connector;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.DatatypeConverter;
+
+import org.openhab.binding.rflink.RfLinkBindingConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Base class for RFLink connectors: listener registration and paced transmission.
+ *
+ * Every connector instance has its own listeners and its own pacing clock, so bridges never see the packets of
+ * another bridge nor throttle each other's transmissions.
+ *
+ * With an ack timeout, frames are paced by the gateway instead of the fixed {@link #SEND_DELAY}: the next frame is
+ * written as soon as the previous one is acknowledged ({@code 20;xx;OK;}), or when the ack timeout of its protocol
+ * expires. That timeout is learned per protocol from the measured ack latency, so short protocols go out back to back
+ * while slow ones (RTS) never overrun the gateway.
+ *
+ * @author Cyril Cauchois - Initial contribution
+ * @author Arjan Mels - Added 200ms pause between messages to improve communication
+ */
+public abstract class RfLinkBaseConnector implements RfLinkConnectorInterface {
+
+    private final Logger logger = LoggerFactory.getLogger(RfLinkBaseConnector.class);
+
+    // delay between messages
+    protected static final int SEND_DELAY = 50;
+
+    // weight of a new sample in the ack latency average
+    private static final int ACK_LATENCY_SMOOTHING = 8;
+
+    // copy-on-write: iterated without locking from the reception thread
+    private final CopyOnWriteArrayList<RfLinkEventListener> listeners = new CopyOnWriteArrayList<>();
+
+    private long lastSend = 0;
+
+    // released by the reception thread for each acknowledgement of the gateway
+    private final Semaphore acks = new Semaphore(0);
+    private volatile int ackTimeout = 0;
+    private final Map<String, AckPacing> ackPacings = new ConcurrentHashMap<>();
+
+    // null to call the listeners from the reading thread
+    private volatile RfLinkReceivePipeline receivePipeline;
+
+    /**
+     * Acknowledgement statistics of one protocol, written by the sending thread only.
+     */
+    private static class AckPacing {
+        volatile long averageLatencyNanos;
+        volatile long acknowledged;
+        volatile long timeouts;
+    }
+
+    /**
+     * @return true when messages can be written
+     */
+    protected abstract boolean isConnected();
+
+    /**
+     * Writes one complete frame (new line included) to the gateway.
+     */
+    protected abstract void writeMessage(byte[] messageData) throws IOException;
+
+    /**
+     * @param ackTimeout
+     *            maximal time in milliseconds to wait for the acknowledgement of a frame before sending the next one, 0
+     *            to pace frames by {@link #SEND_DELAY} without waiting for acknowledgements
+     */
+    public void setAckTimeout(int ackTimeout) {
+        this.ackTimeout = Math.max(ackTimeout, 0);
+    }
+
+    /**
+     * @param receivePipeline
+     *            pipeline handing the received frames over to its dispatch thread, null to call the listeners from the
+     *            reading thread
+     */
+    public void setReceivePipeline(RfLinkReceivePipeline receivePipeline) {
+        this.receivePipeline = receivePipeline;
+    }
+
+    @Override
+    public void sendMessages(Collection<String> messages) throws IOException {
+        if (!isConnected()) {
+            throw new IOException("Not connected, sending messages is not possible");
+        }
+
+        synchronized (this) {
+
+            for (String message : messages) {
+                byte[] messageData = (message + RfLinkBindingConstants.NEW_LINE).getBytes(StandardCharsets.US_ASCII);
+                if (ackTimeout > 0) {
+                    sendAcknowledged(message, messageData);
+                } else {
+                    sendDelayed(messageData);
+                }
+            }
+        }
+    }
+
+    private void sendDelayed(byte[] messageData) throws IOException {
+        long towait = SEND_DELAY - (System.currentTimeMillis() - lastSend);
+        towait = Math.min(Math.max(towait, 0), SEND_DELAY);
+
+        logger.debug("Send data (after {}ms, len={}): {}", towait, messageData.length,
+                DatatypeConverter.printHexBinary(messageData));
+        if (towait > 0) {
+            try {
+                Thread.sleep(towait);
+            } catch (InterruptedException ignore) {
+            }
+        }
+
+        writeMessage(messageData);
+        lastSend = System.currentTimeMillis();
+    }
+
+    private void sendAcknowledged(String message, byte[] messageData) throws IOException {
+        AckPacing pacing = ackPacings.computeIfAbsent(getProtocol(message), protocol -> new AckPacing());
+        long timeout = getAckTimeoutNanos(pacing);
+
+        logger.debug("Send data (ack timeout {}ms, len={}): {}", TimeUnit.NANOSECONDS.toMillis(timeout),
+                messageData.length, DatatypeConverter.printHexBinary(messageData));
+        // forget the acknowledgements that came in late for the previous frames
+        acks.drainPermits();
+        long start = System.nanoTime();
+        writeMessage(messageData);
+
+        boolean acknowledged;
+        try {
+            acknowledged = acks.tryAcquire(timeout, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the acknowledgement");
+        }
+        if (acknowledged) {
+            long latency = System.nanoTime() - start;
+            long average = pacing.averageLatencyNanos;
+            pacing.averageLatencyNanos = average == 0 ? latency
+                    : average + (latency - average) / ACK_LATENCY_SMOOTHING;
+            pacing.acknowledged++;
+        } else {
+            logger.debug("No acknowledgement within {}ms", TimeUnit.NANOSECONDS.toMillis(timeout));
+            pacing.timeouts++;
+        }
+        lastSend = System.currentTimeMillis();
+    }
+
+    /**
+     * @return three times the average ack latency of the protocol, between {@link #SEND_DELAY} and the configured ack
+     *         timeout
+     */
+    private long getAckTimeoutNanos(AckPacing pacing) {
+        long maximum = TimeUnit.MILLISECONDS.toNanos(ackTimeout);
+        long average = pacing.averageLatencyNanos;
+        if (average == 0) {
+            return maximum;
+        }
+        return Math.min(Math.max(3 * average, TimeUnit.MILLISECONDS.toNanos(SEND_DELAY)), maximum);
+    }
+
+    /**
+     * @return the protocol of a command such as "10;NewKaku;00c142;1;ON;"
+     */
+    private static String getProtocol(String message) {
+        int start = message.indexOf(';') + 1;
+        int end = message.indexOf(';', start);
+        return end > start ? message.substring(start, end) : message;
+    }
+
+    /**
+     * @return true for the answers of the gateway to a command: "20;xx;OK;", "20;xx;PONG;" or "20;xx;CMD UNKNOWN;"
+     */
+    static boolean isAcknowledgement(String packet) {
+        if (!packet.startsWith("20;")) {
+            return false;
+        }
+        int start = packet.indexOf(';', 3) + 1;
+        if (start == 0) {
+            return false;
+        }
+        int length = packet.length() - start;
+        return (length == 3 && packet.startsWith("OK;", start)) || (length == 5 && packet.startsWith("PONG;", start))
+                || (length == 12 && packet.startsWith("CMD UNKNOWN;", start));
+    }
+
+    /**
+     * Same as {@link #isAcknowledgement(String)} for the bytes of a frame, without creating any object.
+     */
+    static boolean isAcknowledgement(byte[] data, int offset, int length) {
+        int end = offset + length;
+        if (length < 3 || data[offset] != '2' || data[offset + 1] != '0' || data[offset + 2] != ';') {
+            return false;
+        }
+        int start = offset + 3;
+        while (start < end && data[start] != ';') {
+            start++;
+        }
+        if (start == end) {
+            return false;
+        }
+        start++;
+        int answer = end - start;
+        return (answer == 3 && matches(data, start, "OK;")) || (answer == 5 && matches(data, start, "PONG;"))
+                || (answer == 12 && matches(data, start, "CMD UNKNOWN;"));
+    }
+
+    private static boolean matches(byte[] data, int offset, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (data[offset + i] != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds the learned ack latency and the acknowledged/timed out frames of each protocol to the given statistics.
+     */
+    public void collectStatistics(Map<String, String> statistics) {
+        ackPacings.forEach((protocol, pacing) -> {
+            String prefix = "txAck" + protocol.replaceAll("[^A-Za-z0-9]", "");
+            statistics.put(prefix + "LatencyMs",
+                    String.valueOf(TimeUnit.NANOSECONDS.toMillis(pacing.averageLatencyNanos)));
+            statistics.put(prefix + "Acknowledged", String.valueOf(pacing.acknowledged));
+            statistics.put(prefix + "Timeouts", String.valueOf(pacing.timeouts));
+        });
+    }
+
+    @Override
+    public void addEventListener(RfLinkEventListener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    @Override
+    public void removeEventListener(RfLinkEventListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Hands a frame read from the gateway over to the listeners, the bytes are only valid during the call.
+     */
+    protected void bytesReceived(byte[] data, int offset, int length) {
+        frameRead(ackTimeout > 0 && isAcknowledgement(data, offset, length));
+        RfLinkReceivePipeline pipeline = receivePipeline;
+        if (pipeline == null) {
+            frameDispatched(new String(data, offset, length, StandardCharsets.US_ASCII));
+        } else if (!pipeline.publish(this, data, offset, length)) {
+            logger.debug("Receive pipeline full, frame dropped");
+        }
+    }
+
+    /**
+     * Hands a frame read from the gateway over to the listeners.
+     */
+    protected void frameReceived(String frame) {
+        frameRead(ackTimeout > 0 && isAcknowledgement(frame));
+        RfLinkReceivePipeline pipeline = receivePipeline;
+        if (pipeline == null) {
+            frameDispatched(frame);
+        } else if (!pipeline.publish(this, frame)) {
+            logger.debug("Receive pipeline full, frame dropped");
+        }
+    }
+
+    /**
+     * Releases the sending thread on an acknowledgement and notes the activity of the gateway, from the reading thread
+     * so that neither waits for the dispatch of the previous frames.
+     */
+    private void frameRead(boolean acknowledgement) {
+        if (acknowledgement) {
+            acks.release();
+        }
+        for (RfLinkEventListener listener : listeners) {
+            try {
+                listener.frameRead();
+            } catch (Exception e) {
+                logger.error("Event listener invoking error", e);
+            }
+        }
+    }
+
+    /**
+     * Calls the listeners of a received frame, from the reading thread or the dispatch thread of the pipeline.
+     */
+    void frameDispatched(String frame) {
+        logger.debug("<<< {}", frame);
+        sendMsgToListeners(frame);
+    }
+
+    protected void sendMsgToListeners(String msg) {
+        for (RfLinkEventListener listener : listeners) {
+            try {
+                listener.packetReceived(msg);
+            } catch (Exception e) {
+                logger.error("Event listener invoking error", e);
+            }
+        }
+    }
+
+    protected void sendErrorToListeners(String error) {
+        for (RfLinkEventListener listener : listeners) {
+            try {
+                listener.errorOccured(error);
+            } catch (Exception e) {
+                logger.error("Event listener invoking error", e);
+            }
+        }
+    }
+}
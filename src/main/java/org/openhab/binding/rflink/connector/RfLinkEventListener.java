@@ -27,6 +27,13 @@ public interface RfLinkEventListener {
      */
     void packetReceived(String data);
 
+    /**
+     * Procedure for noticing a frame as soon as it is read from RfLink controller, before it is queued for
+     * {@link #packetReceived(String)}. Called from the reading thread, so it must not block.
+     */
+    default void frameRead() {
+    }
+
     /**
      * Procedure for receiving information fatal error.
      *
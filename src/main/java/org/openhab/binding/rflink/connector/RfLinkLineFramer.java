@@ -0,0 +1,170 @@
+/**
+ * Copyright (c) 2010-2023 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.rflink.connector;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Splits the RFLink byte stream into '\n' terminated frames.
+ *
+ * RFLink only talks plain ASCII, so bytes are accumulated in a reusable {@link ByteBuffer} and every complete frame
+ * is handed out as soon as it is available. Incomplete frames stay in the buffer until the next read completes them.
+ *
+ * @author Cyril Cauchois - Initial contribution
+ */
+public class RfLinkLineFramer {
+
+    private final Logger logger = LoggerFactory.getLogger(RfLinkLineFramer.class);
+
+    // RFLink frames are well below 256 bytes, leave room for several of them per read
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private static final byte LF = '\n';
+    private static final byte CR = '\r';
+
+    // always kept in "write" mode: [0, position) holds the pending bytes
+    private final ByteBuffer buffer;
+
+    /**
+     * Receives the frames as bytes, only valid during the call: the array is reused for the next frames.
+     */
+    @FunctionalInterface
+    public interface FrameSink {
+        void frame(byte[] data, int offset, int length);
+    }
+
+    public RfLinkLineFramer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public RfLinkLineFramer(int capacity) {
+        buffer = ByteBuffer.allocate(capacity);
+    }
+
+    /**
+     * Reads the bytes currently available on the stream, without blocking, up to the free space of the buffer.
+     * Callers drain the frames and call again until nothing is left.
+     *
+     * @return number of bytes read, -1 on end of stream
+     */
+    public int readFrom(InputStream input) throws IOException {
+        int available = input.available();
+        if (available <= 0) {
+            return 0;
+        }
+        ensureSpace();
+        int read = input.read(buffer.array(), buffer.position(), Math.min(available, buffer.remaining()));
+        if (read > 0) {
+            buffer.position(buffer.position() + read);
+        }
+        return read;
+    }
+
+    /**
+     * Reads from a non blocking channel, up to the free space of the buffer.
+     * Callers drain the frames and call again until nothing is left.
+     *
+     * @return number of bytes read, -1 on end of stream
+     */
+    public int readFrom(ReadableByteChannel channel) throws IOException {
+        ensureSpace();
+        return channel.read(buffer);
+    }
+
+    /**
+     * Appends raw bytes to the framer, handing out complete frames whenever the buffer fills up.
+     */
+    public void append(byte[] data, int offset, int length, Consumer<String> consumer) {
+        int end = offset + length;
+        while (offset < end) {
+            if (!buffer.hasRemaining()) {
+                drainFrames(consumer);
+            }
+            ensureSpace();
+            int chunk = Math.min(end - offset, buffer.remaining());
+            buffer.put(data, offset, chunk);
+            offset += chunk;
+        }
+        drainFrames(consumer);
+    }
+
+    /**
+     * Hands out every complete frame held in the buffer, in arrival order. Trailing '\r' and empty lines are
+     * dropped. The incomplete tail, if any, is kept for the next call.
+     *
+     * @return number of frames handed out
+     */
+    public int drainFrames(Consumer<String> consumer) {
+        return drainFrames((data, offset, length) -> consumer
+                .accept(new String(data, offset, length, StandardCharsets.US_ASCII)));
+    }
+
+    /**
+     * Hands out every complete frame held in the buffer as bytes, without creating any object.
+     *
+     * @return number of frames handed out
+     */
+    public int drainFrames(FrameSink sink) {
+        byte[] data = buffer.array();
+        int end = buffer.position();
+        int start = 0;
+        int frames = 0;
+        for (int i = 0; i < end; i++) {
+            if (data[i] == LF) {
+                int frameEnd = i;
+                if (frameEnd > start && data[frameEnd - 1] == CR) {
+                    frameEnd--;
+                }
+                if (frameEnd > start) {
+                    sink.frame(data, start, frameEnd - start);
+                    frames++;
+                }
+                start = i + 1;
+            }
+        }
+        if (start > 0) {
+            // keep the partial frame at the head of the buffer
+            System.arraycopy(data, start, data, 0, end - start);
+            buffer.position(end - start);
+        }
+        return frames;
+    }
+
+    /**
+     * @return number of bytes waiting for their end of line
+     */
+    public int pending() {
+        return buffer.position();
+    }
+
+    public void clear() {
+        buffer.clear();
+    }
+
+    private void ensureSpace() {
+        if (!buffer.hasRemaining()) {
+            // frames are drained before reading again, so a full buffer holds no line feed and can't be a valid
+            // frame: drop it and resync on the next '\n'
+            logger.warn("Discarding {} bytes of unterminated RFLink data", buffer.position());
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/**
+ * Copyright (c) 2010-2023 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.rflink.connector;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Single {@link Selector} thread shared by every network connector, so that any number of gateways can be read
+ * without holding a blocking thread per socket. The channels are read from this thread, so a connector must only hand
+ * its frames over to a receive pipeline: a dispatch on this thread would hold the reading of every other gateway.
+ *
+ * The thread is started with the first connector and stopped when the last one is released. If it fails, its
+ * channels are failed (so their connectors reconnect) and the next connector starts a new selector.
+ *
+ * @author Cyril Cauchois - Initial contribution
+ */
+class RfLinkNioSelector implements Runnable {
+
+    /**
+     * Callback invoked from the selector thread.
+     */
+    interface ChannelHandler {
+
+        /**
+         * Called when the channel has data to read.
+         */
+        void channelReadable(SocketChannel channel) throws IOException;
+
+        /**
+         * Called when reading the channel failed. The channel is already closed.
+         */
+        void channelFailed(SocketChannel channel, IOException e);
+    }
+
+    private static final String THREAD_NAME = "OH-binding-rflink-selector";
+
+    private static RfLinkNioSelector instance;
+    private static int users = 0;
+
+    private final Logger logger = LoggerFactory.getLogger(RfLinkNioSelector.class);
+
+    // null once the thread is over
+    private volatile Selector selector;
+    private final Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<>();
+    // registered channels, to fail them even when the selector can't list its keys any more
+    private final Map<SocketChannel, ChannelHandler> registrations = new ConcurrentHashMap<>();
+    private volatile boolean running = true;
+
+    private RfLinkNioSelector() throws IOException {
+        selector = Selector.open();
+        Thread thread = new Thread(this, THREAD_NAME);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    static synchronized RfLinkNioSelector acquire() throws IOException {
+        if (instance == null) {
+            instance = new RfLinkNioSelector();
+        }
+        users++;
+        return instance;
+    }
+
+    /**
+     * Forgets a selector whose thread is over, so that the next connector doesn't register on it.
+     */
+    private static synchronized void discard(RfLinkNioSelector selector) {
+        if (selector == instance) {
+            instance = null;
+            users = 0;
+        }
+    }
+
+    static synchronized void release(RfLinkNioSelector selector) {
+        if (selector != instance) {
+            return;
+        }
+        if (--users <= 0) {
+            users = 0;
+            instance = null;
+            selector.shutdown();
+        }
+    }
+
+    /**
+     * Registers a connected channel for reading. The channel is switched to non blocking mode.
+     */
+    void register(SocketChannel channel, ChannelHandler handler) throws IOException {
+        Selector current = selector;
+        if (current == null) {
+            throw new IOException("RFLink selector is stopped");
+        }
+        channel.configureBlocking(false);
+        // forget the channels closed since
+        registrations.keySet().removeIf(registered -> !registered.isOpen());
+        registrations.put(channel, handler);
+        pendingTasks.add(() -> {
+            try {
+                channel.register(current, SelectionKey.OP_READ, handler);
+            } catch (IOException e) {
+                handler.channelFailed(channel, e);
+            } catch (ClosedSelectorException e) {
+                handler.channelFailed(channel, new IOException("RFLink selector is stopped"));
+            }
+        });
+        if (selector == null) {
+            // the thread ended meanwhile, nobody else may run the task
+            runPendingTasks();
+        } else {
+            current.wakeup();
+        }
+    }
+
+    private void runPendingTasks() {
+        Runnable task;
+        while ((task = pendingTasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private void shutdown() {
+        running = false;
+        Selector current = selector;
+        if (current != null) {
+            current.wakeup();
+        }
+    }
+
+    @Override
+    public void run() {
+        logger.debug("RFLink selector thread started");
+        Selector current = selector;
+        try {
+            while (running) {
+                current.select();
+
+                runPendingTasks();
+
+                Iterator<SelectionKey> keys = current.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key.isValid() && key.isReadable()) {
+                        read(key);
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            logger.error("RFLink selector failed: {}", e.getMessage());
+        } finally {
+            discard(this);
+            selector = null;
+            if (running) {
+                failChannels();
+            }
+            try {
+                current.close();
+            } catch (IOException e) {
+                logger.trace("cannot close selector");
+            }
+            // the registrations queued meanwhile fail on the closed selector
+            runPendingTasks();
+            logger.debug("RFLink selector thread stopped");
+        }
+    }
+
+    /**
+     * Closes and fails the channels of a selector that stopped unexpectedly, so that their connectors reconnect.
+     */
+    private void failChannels() {
+        IOException failure = new IOException("RFLink selector stopped");
+        registrations.forEach((channel, handler) -> {
+            try {
+                channel.close();
+            } catch (IOException ignore) {
+            }
+            handler.channelFailed(channel, failure);
+        });
+        registrations.clear();
+    }
+
+    private void read(SelectionKey key) {
+        SocketChannel channel = (SocketChannel) key.channel();
+        ChannelHandler handler = (ChannelHandler) key.attachment();
+        try {
+            handler.channelReadable(channel);
+        } catch (IOException e) {
+            key.cancel();
+            registrations.remove(channel);
+            try {
+                channel.close();
+            } catch (IOException ignore) {
+            }
+            handler.channelFailed(channel, e);
+        } catch (RuntimeException e) {
+            logger.error("Unexpected error while reading RFLink channel", e);
+        }
+    }
+}
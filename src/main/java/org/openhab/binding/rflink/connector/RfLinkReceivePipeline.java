@@ -0,0 +1,318 @@
+/**
+ * Copyright (c) 2010-2023 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.rflink.connector;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hand over of the received frames from the reading thread (serial event, socket selector, replay) to a dispatch
+ * thread, so that slow listeners never hold the reading thread and the gateway input is drained in time.
+ *
+ * The reading thread only copies the bytes of a frame into the next slot of a preallocated ring. The dispatch thread
+ * decodes the slots in order and calls the listeners of the connector of each frame. There is a single reading
+ * thread per pipeline.
+ *
+ * When the ring is full, the {@link OverflowPolicy} either drops the oldest frame, drops the new frame, or makes the
+ * reading thread wait. While the ring is empty, the dispatch thread waits according to its {@link WaitStrategy}.
+ *
+ * @author Cyril Cauchois - Initial contribution
+ */
+public class RfLinkReceivePipeline implements Runnable {
+
+    private final Logger logger = LoggerFactory.getLogger(RfLinkReceivePipeline.class);
+
+    // RFLink frames are well below 256 bytes, a slot grows for a longer one
+    private static final int SLOT_CAPACITY = 256;
+
+    private static final int SPINS = 100;
+    private static final int YIELDS = 100;
+    private static final long SLEEP_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long BLOCKED_PRODUCER_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    // weight of a new sample in the latency averages
+    private static final int LATENCY_SMOOTHING = 8;
+
+    /**
+     * How the dispatch thread waits for frames.
+     */
+    public enum WaitStrategy {
+        // parks until the reading thread signals a frame: no CPU when idle
+        BLOCKING,
+        // spins, yields, then sleeps 1ms: no signalling cost for the reading thread, up to 1ms latency
+        SLEEPING,
+        // spins then yields: lowest latency, keeps a core busy
+        YIELDING;
+
+        public static WaitStrategy parse(String value) {
+            return RfLinkReceivePipeline.parse(values(), value, BLOCKING);
+        }
+    }
+
+    /**
+     * What the reading thread does with a frame when the ring is full.
+     */
+    public enum OverflowPolicy {
+        DROP_OLDEST,
+        DROP_NEWEST,
+        // waits for a free slot, leaving the bytes in the input buffers of the system
+        BLOCK;
+
+        public static OverflowPolicy parse(String value) {
+            return RfLinkReceivePipeline.parse(values(), value, DROP_OLDEST);
+        }
+    }
+
+    /**
+     * Accepts "dropOldest" as well as "DROP_OLDEST".
+     */
+    private static <E extends Enum<E>> E parse(E[] values, String value, E defaultValue) {
+        if (value != null) {
+            for (E element : values) {
+                if (element.name().replace("_", "").equalsIgnoreCase(value.trim().replace("_", ""))) {
+                    return element;
+                }
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * A frame, written by the reading thread then read by the dispatch thread.
+     */
+    private static class Slot {
+        byte[] data = new byte[SLOT_CAPACITY];
+        int length;
+        long publishedNanos;
+        RfLinkBaseConnector target;
+    }
+
+    private final String name;
+    private final WaitStrategy waitStrategy;
+    private final OverflowPolicy overflowPolicy;
+    private final Slot[] slots;
+    private final int mask;
+
+    // next slot written by the reading thread
+    private volatile long head;
+    // next slot read by the dispatch thread, also moved by the reading thread to drop the oldest frame
+    private final AtomicLong tail = new AtomicLong();
+    private volatile boolean waiting;
+    private volatile Thread thread;
+
+    // written by the reading thread only
+    private volatile long published;
+    private volatile long dropped;
+    private volatile long peakOccupancy;
+
+    // written by the dispatch thread only
+    private volatile long averageWaitNanos;
+    private volatile long averageDispatchNanos;
+    private volatile long maxDispatchNanos;
+
+    /**
+     * @param size
+     *            number of slots, rounded up to a power of two
+     */
+    public RfLinkReceivePipeline(String name, int size, WaitStrategy waitStrategy, OverflowPolicy overflowPolicy) {
+        this.name = name;
+        this.waitStrategy = waitStrategy;
+        this.overflowPolicy = overflowPolicy;
+        int capacity = Integer.highestOneBit(Math.max(size, 2) - 1) << 1;
+        slots = new Slot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot();
+        }
+        mask = capacity - 1;
+    }
+
+    public synchronized void start() {
+        if (thread == null) {
+            thread = new Thread(this, "OH-binding-rflink-rx-" + name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops the dispatch thread, the frames still in the ring are dropped.
+     */
+    public synchronized void stop() {
+        Thread current = thread;
+        thread = null;
+        if (current != null) {
+            LockSupport.unpark(current);
+        }
+    }
+
+    /**
+     * Copies a frame into the ring, called by the reading thread.
+     *
+     * @return false if the frame was dropped
+     */
+    boolean publish(RfLinkBaseConnector target, byte[] data, int offset, int length) {
+        Slot slot = claim();
+        if (slot == null) {
+            return false;
+        }
+        if (slot.data.length < length) {
+            slot.data = new byte[Integer.highestOneBit(length) << 1];
+        }
+        System.arraycopy(data, offset, slot.data, 0, length);
+        commit(slot, target, length);
+        return true;
+    }
+
+    /**
+     * Copies a frame of ASCII characters into the ring, called by the reading thread.
+     *
+     * @return false if the frame was dropped
+     */
+    boolean publish(RfLinkBaseConnector target, String frame) {
+        Slot slot = claim();
+        if (slot == null) {
+            return false;
+        }
+        int length = frame.length();
+        if (slot.data.length < length) {
+            slot.data = new byte[Integer.highestOneBit(length) << 1];
+        }
+        for (int i = 0; i < length; i++) {
+            slot.data[i] = (byte) frame.charAt(i);
+        }
+        commit(slot, target, length);
+        return true;
+    }
+
+    /**
+     * @return the slot at the head once there is room for it, null if the new frame is dropped
+     */
+    private Slot claim() {
+        long next = head;
+        while (next - tail.get() >= slots.length) {
+            Thread current = thread;
+            if (current == null || overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+                dropped++;
+                return null;
+            }
+            if (overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+                long oldest = tail.get();
+                if (next - oldest >= slots.length && tail.compareAndSet(oldest, oldest + 1)) {
+                    dropped++;
+                }
+            } else {
+                LockSupport.unpark(current);
+                LockSupport.parkNanos(this, BLOCKED_PRODUCER_NANOS);
+            }
+        }
+        return slots[(int) next & mask];
+    }
+
+    private void commit(Slot slot, RfLinkBaseConnector target, int length) {
+        slot.length = length;
+        slot.target = target;
+        slot.publishedNanos = System.nanoTime();
+        long next = head + 1;
+        head = next;
+        published++;
+        long occupancy = next - tail.get();
+        if (occupancy > peakOccupancy) {
+            peakOccupancy = occupancy;
+        }
+        if (waiting) {
+            Thread current = thread;
+            if (current != null) {
+                LockSupport.unpark(current);
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        Thread self = Thread.currentThread();
+        logger.debug("Receive thread of {} started", name);
+        int idle = 0;
+        while (thread == self) {
+            long current = tail.get();
+            if (current == head) {
+                idle(++idle);
+                continue;
+            }
+            idle = 0;
+            Slot slot = slots[(int) current & mask];
+            RfLinkBaseConnector target = slot.target;
+            long publishedNanos = slot.publishedNanos;
+            byte[] data = slot.data;
+            // a slot overwritten while it is read may hold a longer frame than its former array
+            String frame = new String(data, 0, Math.min(slot.length, data.length), StandardCharsets.US_ASCII);
+            if (!tail.compareAndSet(current, current + 1)) {
+                // dropped and overwritten by the reading thread while it was decoded
+                continue;
+            }
+            long start = System.nanoTime();
+            try {
+                target.frameDispatched(frame);
+            } catch (RuntimeException e) {
+                logger.error("Unexpected error while dispatching '{}'", frame, e);
+            }
+            long dispatch = System.nanoTime() - start;
+            averageWaitNanos = average(averageWaitNanos, start - publishedNanos);
+            averageDispatchNanos = average(averageDispatchNanos, dispatch);
+            if (dispatch > maxDispatchNanos) {
+                maxDispatchNanos = dispatch;
+            }
+        }
+        logger.debug("Receive thread of {} stopped", name);
+    }
+
+    private void idle(int idle) {
+        if (waitStrategy == WaitStrategy.BLOCKING) {
+            waiting = true;
+            // a frame committed before waiting was set is seen here, one committed after unparks this thread
+            if (tail.get() == head && thread != null) {
+                LockSupport.park(this);
+            }
+            waiting = false;
+        } else if (idle < SPINS) {
+            Thread.onSpinWait();
+        } else if (idle < SPINS + YIELDS || waitStrategy == WaitStrategy.YIELDING) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(this, SLEEP_NANOS);
+        }
+    }
+
+    private static long average(long average, long sample) {
+        return average == 0 ? sample : average + (sample - average) / LATENCY_SMOOTHING;
+    }
+
+    /**
+     * Adds the occupancy of the ring, the dropped frames and the latencies of the stages to the given statistics.
+     */
+    public void collectStatistics(Map<String, String> statistics) {
+        statistics.put("rxQueueSize", String.valueOf(slots.length));
+        statistics.put("rxQueueOccupancy", String.valueOf(head - tail.get()));
+        statistics.put("rxQueuePeak", String.valueOf(peakOccupancy));
+        statistics.put("rxQueuePublished", String.valueOf(published));
+        statistics.put("rxQueueDropped", String.valueOf(dropped));
+        statistics.put("rxQueueWaitUs", String.valueOf(TimeUnit.NANOSECONDS.toMicros(averageWaitNanos)));
+        statistics.put("rxDispatchUs", String.valueOf(TimeUnit.NANOSECONDS.toMicros(averageDispatchNanos)));
+        statistics.put("rxDispatchMaxUs", String.valueOf(TimeUnit.NANOSECONDS.toMicros(maxDispatchNanos)));
+    }
+}
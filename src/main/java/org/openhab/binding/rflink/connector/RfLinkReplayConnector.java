@@ -0,0 +1,293 @@
+/**
+ * Copyright (c) 2010-2023 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.rflink.connector;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * RFLink connector replaying a recorded capture instead of talking to a real gateway, to load test the binding.
+ *
+ * Each line of the capture holds an optional timestamp followed by the received frame, e.g.
+ *
+ * <pre>
+ * 1680343200123 20;0B;Oregon Temp;ID=0710;TEMP=00a8;BAT=LOW;
+ * 2023-04-01T10:00:00.456Z 20;0C;Oregon Temp;ID=0710;TEMP=00a8;BAT=LOW;
+ * 2023-04-01 12:00:01.789 20;0D;Cresta;ID=8001;WINDIR=0002;WINSP=0060;
+ * </pre>
+ *
+ * Timestamps are either epoch milliseconds, ISO-8601 instants or local date-times. Frames are replayed at the
+ * recorded pace divided by the speed factor; a speed of 0 replays as fast as the listeners consume them. Frames without
+ * timestamp follow the previous one immediately. Transmitted messages are answered like a gateway would: the replies
+ * are queued to the replay thread, which publishes them between the replayed frames, until the end of the capture.
+ * The end of the capture is reported to the listeners as an error, and the capture is not replayed again unless the
+ * connector is connected again.
+ *
+ * @author Cyril Cauchois - Initial contribution
+ */
+public class RfLinkReplayConnector extends RfLinkBaseConnector {
+
+    private final Logger logger = LoggerFactory.getLogger(RfLinkReplayConnector.class);
+
+    private static final String THREAD_NAME = "OH-binding-rflink-replay";
+    private static final String FRAME_START = "20;";
+    private static final String PING = "10;PING;";
+
+    private final double speed;
+    private volatile Thread replayThread;
+    private volatile boolean finished;
+    // replies to the transmitted messages, published by the replay thread as the only producer of frames
+    private final Queue<String> replies = new ConcurrentLinkedQueue<>();
+
+    private volatile long frames;
+    private volatile double framesPerSecond;
+    private volatile long averageLagMillis;
+    private volatile long maxLagMillis;
+
+    /**
+     * @param speed
+     *            replay speed factor: 1 for real time, N for N times faster, 0 (or less) for maximum speed
+     */
+    public RfLinkReplayConnector(double speed) {
+        this.speed = speed;
+    }
+
+    /**
+     * @param device
+     *            path of the capture file
+     * @param baudRate
+     *            ignored
+     */
+    @Override
+    public void connect(String device, int baudRate) throws Exception {
+        logger.debug("connect({})", device);
+
+        Path capture = Paths.get(device);
+        if (!Files.isReadable(capture)) {
+            throw new NoSuchFileException(device, null, "capture file is not readable");
+        }
+        replies.clear();
+        finished = false;
+        replayThread = new Thread(() -> replay(capture), THREAD_NAME);
+        replayThread.setDaemon(true);
+        replayThread.start();
+    }
+
+    @Override
+    public void disconnect() {
+        logger.debug("Disconnecting");
+        if (replayThread != null) {
+            replayThread.interrupt();
+            replayThread = null;
+        }
+    }
+
+    @Override
+    protected boolean isConnected() {
+        return replayThread != null;
+    }
+
+    @Override
+    protected void writeMessage(byte[] messageData) throws IOException {
+        String message = new String(messageData, StandardCharsets.US_ASCII).trim();
+        Thread current = replayThread;
+        if (current == null) {
+            throw new IOException("Replay is finished");
+        }
+        replies.offer(PING.equals(message) ? "20;00;PONG;" : "20;00;OK;");
+        LockSupport.unpark(current);
+    }
+
+    private void publishReplies() {
+        String reply;
+        while ((reply = replies.poll()) != null) {
+            frameReceived(reply);
+        }
+    }
+
+    private void replay(Path capture) {
+        logger.info("Replaying RFLink capture {} at speed {}", capture, speed > 0 ? speed : "max");
+
+        long count = 0;
+        long totalLagNanos = 0;
+        long maxLagNanos = 0;
+        long startNanos = System.nanoTime();
+        long firstTimestamp = -1;
+        long previousOffsetNanos = 0;
+        boolean ended = false;
+        boolean current = true;
+
+        try (BufferedReader reader = Files.newBufferedReader(capture, StandardCharsets.US_ASCII)) {
+            String line;
+            while ((line = reader.readLine()) != null && !Thread.currentThread().isInterrupted()) {
+                int frameStart = findFrameStart(line);
+                if (frameStart < 0) {
+                    continue;
+                }
+
+                long offsetNanos = previousOffsetNanos;
+                long scheduledNanos;
+                if (speed > 0) {
+                    long timestamp = parseTimestamp(line.substring(0, frameStart).trim());
+                    if (timestamp >= 0) {
+                        if (firstTimestamp < 0) {
+                            firstTimestamp = timestamp;
+                        }
+                        offsetNanos = Math.max(previousOffsetNanos,
+                                (long) (TimeUnit.MILLISECONDS.toNanos(timestamp - firstTimestamp) / speed));
+                    }
+                    scheduledNanos = startNanos + offsetNanos;
+                    waitUntil(scheduledNanos);
+                    if (Thread.currentThread().isInterrupted()) {
+                        break;
+                    }
+                } else {
+                    scheduledNanos = System.nanoTime();
+                }
+                previousOffsetNanos = offsetNanos;
+
+                publishReplies();
+                frameReceived(line.substring(frameStart).trim());
+
+                // lag between the recorded (scaled) arrival and the end of the processing by the listeners, or the
+                // hand over to the receive pipeline
+                long lagNanos = System.nanoTime() - scheduledNanos;
+                totalLagNanos += lagNanos;
+                maxLagNanos = Math.max(maxLagNanos, lagNanos);
+                count++;
+            }
+            ended = line == null;
+        } catch (IOException e) {
+            logger.error("Unable to read RFLink capture {}: {}", capture, e.getMessage());
+            sendErrorToListeners("Unable to read capture " + capture);
+            return;
+        } finally {
+            // the capture is over, like a disconnected gateway
+            current = replayThread == Thread.currentThread();
+            if (current) {
+                replayThread = null;
+            }
+        }
+
+        long elapsedNanos = Math.max(System.nanoTime() - startNanos, 1);
+        frames = count;
+        framesPerSecond = count * 1e9d / elapsedNanos;
+        averageLagMillis = count > 0 ? TimeUnit.NANOSECONDS.toMillis(totalLagNanos / count) : 0;
+        maxLagMillis = TimeUnit.NANOSECONDS.toMillis(maxLagNanos);
+        logger.info("Replay of {} finished: {} frames in {} ms, {} frames/s, lag avg {} ms, max {} ms", capture,
+                count, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), String.format("%.1f", framesPerSecond),
+                averageLagMillis, maxLagMillis);
+        if (ended && current) {
+            finished = true;
+            sendErrorToListeners("Replay of capture " + capture + " finished");
+        }
+    }
+
+    private static int findFrameStart(String line) {
+        int index = line.indexOf(FRAME_START);
+        while (index > 0 && !Character.isWhitespace(line.charAt(index - 1))) {
+            index = line.indexOf(FRAME_START, index + 1);
+        }
+        return index;
+    }
+
+    /**
+     * @return the timestamp in epoch milliseconds, -1 if there is none
+     */
+    private static long parseTimestamp(String timestamp) {
+        if (timestamp.isEmpty()) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(timestamp);
+        } catch (NumberFormatException e) {
+            // not epoch milliseconds
+        }
+        try {
+            return Instant.parse(timestamp).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            // not an instant
+        }
+        try {
+            return LocalDateTime.parse(timestamp.replace(' ', 'T')).atZone(ZoneId.systemDefault()).toInstant()
+                    .toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Waits for the scheduled arrival of the next frame, publishing the replies queued in the meantime.
+     */
+    private void waitUntil(long deadlineNanos) {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0 && !Thread.currentThread().isInterrupted()) {
+            publishReplies();
+            LockSupport.parkNanos(this, remaining);
+        }
+    }
+
+    /**
+     * @return true once the whole capture has been replayed, until the next connection
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * @return number of frames delivered by the last finished replay
+     */
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * @return throughput achieved by the last finished replay
+     */
+    public double getFramesPerSecond() {
+        return framesPerSecond;
+    }
+
+    /**
+     * @return average delay between the scheduled arrival of a frame and the end of its processing by the listeners,
+     *         or only of its hand over to the receive pipeline when there is one
+     */
+    public long getAverageLagMillis() {
+        return averageLagMillis;
+    }
+
+    /**
+     * @return maximal delay between the scheduled arrival of a frame and the end of its processing by the listeners,
+     *         or only of its hand over to the receive pipeline when there is one (see its rxQueueWaitUs and
+     *         rxDispatchUs statistics)
+     */
+    public long getMaxLagMillis() {
+        return maxLagMillis;
+    }
+}
@@ -12,19 +12,11 @@
  */
 package org.openhab.binding.rflink.connector;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Iterator;
-import java.util.List;
-
-import javax.xml.bind.DatatypeConverter;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
-import org.openhab.binding.rflink.RfLinkBindingConstants;
 import org.openhab.core.io.transport.serial.*;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Reference;
@@ -37,30 +29,23 @@ import org.slf4j.LoggerFactory;
  * @author Cyril Cauchois - Initial contribution
  * @author Arjan Mels - Added 200ms pause between messages to improve communication
  */
-public class RfLinkSerialConnector implements RfLinkConnectorInterface, SerialPortEventListener {
+public class RfLinkSerialConnector extends RfLinkBaseConnector implements SerialPortEventListener {
 
     private final Logger logger = LoggerFactory.getLogger(RfLinkSerialConnector.class);
 
-    private static List<RfLinkEventListener> _listeners = new ArrayList<RfLinkEventListener>();
-
     SerialPort serialPort;
     private @NonNullByDefault({}) SerialPortIdentifier portIdentifier;
     private final SerialPortManager serialPortManager;
 
     /*
-     * A BufferedReader which will be fed by a InputStreamReader
-     * converting the bytes into characters
-     * making the displayed results codepage independent
+     * Raw input stream, framed into lines by the RfLinkLineFramer
+     * (RFLink only sends ASCII, no charset decoding is needed)
      */
-    private BufferedReader input;
+    private InputStream input;
+    private final RfLinkLineFramer framer = new RfLinkLineFramer();
     private OutputStream output;
     private static final int TIME_OUT = 2000;
 
-    // delay between messages
-    private static final int SEND_DELAY = 50;
-
-    private static long lastSend = 0;
-
     @Activate
     public RfLinkSerialConnector(final @Reference SerialPortManager serialPortManager) {
 
@@ -85,7 +70,8 @@ public class RfLinkSerialConnector implements RfLinkConnectorInterface, SerialPo
         serialPort.enableReceiveThreshold(1);
 
         // open the streams
-        input = new BufferedReader(new InputStreamReader(serialPort.getInputStream()));
+        framer.clear();
+        input = serialPort.getInputStream();
         output = serialPort.getOutputStream();
         output.flush();
 
@@ -138,79 +124,28 @@ public class RfLinkSerialConnector implements RfLinkConnectorInterface, SerialPo
     }
 
     @Override
-    public void sendMessages(Collection<String> messages) throws IOException {
-        if (output == null) {
-            throw new IOException("Not connected, sending messages is not possible");
-        }
-
-        synchronized (this) {
-
-            for (String message : messages) {
-                long towait = SEND_DELAY - (System.currentTimeMillis() - lastSend);
-                towait = Math.min(Math.max(towait, 0), SEND_DELAY);
-
-                byte[] messageData = (message + RfLinkBindingConstants.NEW_LINE).getBytes();
-                logger.debug("Send data (after {}ms, len={}): {}", towait, messageData.length,
-                        DatatypeConverter.printHexBinary(messageData));
-                if (towait > 0) {
-                    try {
-                        Thread.sleep(towait);
-                    } catch (InterruptedException ignore) {
-                    }
-                }
-
-                output.write(messageData);
-                output.flush();
-                lastSend = System.currentTimeMillis();
-            }
-        }
-    }
-
-    @Override
-    public void addEventListener(RfLinkEventListener listener) {
-        if (!_listeners.contains(listener)) {
-            _listeners.add(listener);
-        }
+    protected boolean isConnected() {
+        return output != null;
     }
 
     @Override
-    public void removeEventListener(RfLinkEventListener listener) {
-        _listeners.remove(listener);
-    }
-
-    private void sendMsgToListeners(String msg) {
-        try {
-            Iterator<RfLinkEventListener> iterator = _listeners.iterator();
-
-            while (iterator.hasNext()) {
-                iterator.next().packetReceived(msg);
-            }
-
-        } catch (Exception e) {
-            logger.error("Event listener invoking error", e);
-        }
-    }
-
-    private void sendErrorToListeners(String error) {
-        try {
-            Iterator<RfLinkEventListener> iterator = _listeners.iterator();
-
-            while (iterator.hasNext()) {
-                iterator.next().errorOccured(error);
-            }
-
-        } catch (Exception e) {
-            logger.error("Event listener invoking error", e);
+    protected void writeMessage(byte[] messageData) throws IOException {
+        OutputStream out = output;
+        if (out == null) {
+            throw new IOException("Not connected, sending messages is not possible");
         }
+        out.write(messageData);
+        out.flush();
     }
 
     @Override
     public void serialEvent(SerialPortEvent oEvent) {
         if (oEvent.getEventType() == SerialPortEvent.DATA_AVAILABLE) {
             try {
-                String inputLine = input.readLine();
-                logger.debug("<<< {}", inputLine);
-                sendMsgToListeners(inputLine);
+                // several frames can arrive within a single event: hand out all of them
+                while (framer.readFrom(input) > 0) {
+                    framer.drainFrames(this::bytesReceived);
+                }
             } catch (Exception e) {
                 logger.error("{}", e.toString());
             }
@@ -0,0 +1,169 @@
+/**
+ * Copyright (c) 2010-2023 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.rflink.connector;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openhab.binding.rflink.RfLinkBindingConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * RFLink connector for network gateways (RFLink32/ESP boards, ser2net exported serial ports, ...).
+ *
+ * Reception is driven by the shared {@link RfLinkNioSelector} thread and framed exactly like the serial input.
+ *
+ * @author Cyril Cauchois - Initial contribution
+ */
+public class RfLinkTcpConnector extends RfLinkBaseConnector implements RfLinkNioSelector.ChannelHandler {
+
+    private final Logger logger = LoggerFactory.getLogger(RfLinkTcpConnector.class);
+
+    private static final int CONNECT_TIMEOUT = 2000;
+    private static final long WRITE_TIMEOUT = TimeUnit.MILLISECONDS.toNanos(2000);
+
+    private volatile SocketChannel channel;
+    private RfLinkNioSelector selector;
+    private final RfLinkLineFramer framer = new RfLinkLineFramer();
+
+    /**
+     * @param device
+     *            gateway address as "host:port" or "[IPv6 address]:port" (port defaults to
+     *            {@link RfLinkBindingConstants#TCP_PORT_DEFAULT})
+     * @param baudRate
+     *            ignored
+     */
+    @Override
+    public void connect(String device, int baudRate) throws Exception {
+        logger.debug("connect({})", device);
+
+        InetSocketAddress address = parseAddress(device);
+        SocketChannel newChannel = SocketChannel.open();
+        try {
+            newChannel.socket().connect(address, CONNECT_TIMEOUT);
+            newChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            newChannel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+
+            framer.clear();
+            selector = RfLinkNioSelector.acquire();
+            channel = newChannel;
+            selector.register(newChannel, this);
+        } catch (IOException e) {
+            newChannel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Parses "host", "host:port", "[address]" or "[address]:port". An address with more than one colon and no
+     * brackets is a bare IPv6 address, without port.
+     */
+    static InetSocketAddress parseAddress(String device) {
+        String address = device.trim();
+        if (address.startsWith("[")) {
+            int end = address.indexOf(']');
+            if (end < 0) {
+                throw new IllegalArgumentException("Missing ']' in gateway address " + device);
+            }
+            String host = address.substring(1, end).trim();
+            String port = address.substring(end + 1).trim();
+            if (port.isEmpty()) {
+                return new InetSocketAddress(host, RfLinkBindingConstants.TCP_PORT_DEFAULT);
+            }
+            if (!port.startsWith(":")) {
+                throw new IllegalArgumentException("Invalid gateway address " + device);
+            }
+            return new InetSocketAddress(host, Integer.parseInt(port.substring(1).trim()));
+        }
+        int separator = address.indexOf(':');
+        if (separator < 0 || separator != address.lastIndexOf(':')) {
+            return new InetSocketAddress(address, RfLinkBindingConstants.TCP_PORT_DEFAULT);
+        }
+        return new InetSocketAddress(address.substring(0, separator).trim(),
+                Integer.parseInt(address.substring(separator + 1).trim()));
+    }
+
+    @Override
+    public void disconnect() {
+        logger.debug("Disconnecting");
+
+        SocketChannel oldChannel = channel;
+        channel = null;
+        if (oldChannel != null) {
+            try {
+                oldChannel.close();
+            } catch (IOException e) {
+                logger.trace("cannot close socket");
+            }
+        }
+        if (selector != null) {
+            RfLinkNioSelector.release(selector);
+            selector = null;
+        }
+
+        logger.debug("Closed");
+    }
+
+    @Override
+    protected boolean isConnected() {
+        return channel != null;
+    }
+
+    @Override
+    protected void writeMessage(byte[] messageData) throws IOException {
+        SocketChannel current = channel;
+        if (current == null) {
+            throw new IOException("Not connected, sending messages is not possible");
+        }
+        ByteBuffer data = ByteBuffer.wrap(messageData);
+        long deadline = System.nanoTime() + WRITE_TIMEOUT;
+        while (data.hasRemaining()) {
+            if (current.write(data) == 0) {
+                // socket buffer full, the non blocking channel can't take more yet
+                if (System.nanoTime() - deadline > 0) {
+                    throw new IOException("Timeout while writing to RFLink gateway");
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+    }
+
+    @Override
+    public void channelReadable(SocketChannel readable) throws IOException {
+        int read;
+        while ((read = framer.readFrom(readable)) > 0) {
+            framer.drainFrames(this::bytesReceived);
+        }
+        if (read < 0) {
+            throw new EOFException("Connection closed by RFLink gateway");
+        }
+    }
+
+    @Override
+    public void channelFailed(SocketChannel failed, IOException e) {
+        if (failed != channel) {
+            // closed on purpose
+            return;
+        }
+        logger.debug("RFLink gateway connection lost: {}", e.getMessage());
+        channel = null;
+        sendErrorToListeners("Connection lost: " + e.getMessage());
+    }
+}
@@ -13,29 +13,41 @@
 package org.openhab.binding.rflink.handler;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
-import java.util.Queue;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
+import org.openhab.binding.rflink.RfLinkBindingConstants;
 import org.openhab.binding.rflink.config.RfLinkBridgeConfiguration;
+import org.openhab.binding.rflink.connector.RfLinkBaseConnector;
 import org.openhab.binding.rflink.connector.RfLinkConnectorInterface;
 import org.openhab.binding.rflink.connector.RfLinkEventListener;
+import org.openhab.binding.rflink.connector.RfLinkReceivePipeline;
+import org.openhab.binding.rflink.connector.RfLinkReplayConnector;
 import org.openhab.binding.rflink.connector.RfLinkSerialConnector;
+import org.openhab.binding.rflink.connector.RfLinkTcpConnector;
 import org.openhab.binding.rflink.exceptions.RfLinkException;
 import org.openhab.binding.rflink.exceptions.RfLinkNotImpException;
 import org.openhab.binding.rflink.internal.DeviceMessageListener;
+import org.openhab.binding.rflink.internal.RfLinkStateSnapshot;
+import org.openhab.binding.rflink.internal.RfLinkStateStore;
 import org.openhab.binding.rflink.messages.RfLinkMessage;
 import org.openhab.binding.rflink.messages.RfLinkMessageFactory;
 import org.openhab.binding.rflink.messages.RfLinkRawMessage;
+import org.openhab.core.OpenHAB;
 import org.openhab.core.io.transport.serial.SerialPortManager;
 import org.openhab.core.library.types.StringType;
 import org.openhab.core.thing.Bridge;
 import org.openhab.core.thing.ChannelUID;
+import org.openhab.core.thing.Thing;
 import org.openhab.core.thing.ThingStatus;
 import org.openhab.core.thing.ThingStatusDetail;
+import org.openhab.core.thing.ThingUID;
 import org.openhab.core.thing.binding.BaseBridgeHandler;
 import org.openhab.core.types.Command;
 import org.openhab.core.types.RefreshType;
@@ -55,44 +67,66 @@ public class RfLinkBridgeHandler extends BaseBridgeHandler {
 
     private Logger logger = LoggerFactory.getLogger(RfLinkBridgeHandler.class);
 
-    RfLinkConnectorInterface connector = null;
+    // reconnection backoff: first attempt after 250ms, doubled after each failure up to a minute
+    private static final long RECONNECT_DELAY_MIN = 250;
+    private static final long RECONNECT_DELAY_MAX = 60000;
+
+    // period of the connection supervision (reconnection, idle PING, RX silence watchdog)
+    private static final int SUPERVISION_PERIOD = 1;
+
+    private static final String DISPATCH_MODE_STRIPED = "striped";
+    private static final String DISPATCH_MODE_ISOLATED = "isolated";
+
+    private static final int DEFAULT_STATE_STORE_SIZE = 1000;
+    private static final int DEFAULT_RECEIVE_QUEUE_SIZE = 256;
+
+    volatile RfLinkConnectorInterface connector = null;
     private MessageListener eventListener = new MessageListener();
 
+    // listeners of every message (discovery)
     private List<DeviceMessageListener> deviceStatusListeners = new CopyOnWriteArrayList<>();
+    // listeners of the messages of one device (things)
+    private final RfLinkDeviceRoutes deviceRoutes = new RfLinkDeviceRoutes();
 
-    private RfLinkBridgeConfiguration configuration = null;
-    private ScheduledFuture<?> connectorTask = null;
-    private ScheduledFuture<?> keepAliveTask = null;
-    private final SerialPortManager serialPortManager;
+    private final RfLinkFrameDeduplicator deduplicator = new RfLinkFrameDeduplicator();
 
-    private class TransmitQueue {
-        private Queue<RfLinkMessage> queue = new LinkedBlockingQueue<RfLinkMessage>();
+    // null when the frames are dispatched from the reading thread
+    private volatile RfLinkReceivePipeline receivePipeline;
 
-        public synchronized void enqueue(RfLinkMessage msg) throws IOException {
-            boolean wasEmpty = queue.isEmpty();
-            if (queue.offer(msg)) {
-                if (wasEmpty) {
-                    send();
-                }
-            } else {
-                logger.error("Transmit queue overflow. Lost message: {}", msg);
-            }
-        }
+    // null when the listeners are called from the dispatch thread
+    private volatile RfLinkDispatchStripes dispatchStripes;
 
-        public synchronized void send() throws IOException {
-            while (!queue.isEmpty()) {
-                RfLinkMessage msg = queue.poll();
-                logger.debug("Transmitting message '{}'", msg);
-                connector.sendMessages(msg.buildMessages());
-            }
-        }
-    }
+    // null when the listeners are not isolated from each other
+    private volatile RfLinkListenerMailboxes listenerMailboxes;
+
+    private volatile RfLinkStateStore stateStore = new RfLinkStateStore(DEFAULT_STATE_STORE_SIZE, 0);
+
+    // null when the states are not persisted
+    private RfLinkStateSnapshot stateSnapshot;
+    private ScheduledFuture<?> snapshotTask = null;
+
+    private RfLinkBridgeConfiguration configuration = null;
+    private volatile ScheduledFuture<?> supervisorTask = null;
+    private volatile ScheduledFuture<?> reconnectTask = null;
+    private int reconnectAttempts = 0;
+    private ScheduledFuture<?> statisticsTask = null;
+    private final SerialPortManager serialPortManager;
 
-    private TransmitQueue transmitQueue = new TransmitQueue();
+    private final RfLinkTransmitQueue transmitQueue;
+
+    // System.nanoTime() of the last received frame, of the last PING queued or written and its round trip time
+    private volatile long lastReceived;
+    private volatile long pingSent;
+    private volatile boolean pingPending;
+    private volatile long pingRoundTrip = -1;
+    private volatile long connections;
+    // true from a successful connection until it is found lost, only its frames may bring the bridge online
+    private volatile boolean connected;
 
     public RfLinkBridgeHandler(Bridge br, SerialPortManager serialPortManager) {
         super(br);
         this.serialPortManager = serialPortManager;
+        this.transmitQueue = new RfLinkTransmitQueue(br.getUID().getId(), this::transmit, this::transmitFailed);
     }
 
     @Override
@@ -100,12 +134,8 @@ public class RfLinkBridgeHandler extends BaseBridgeHandler {
         if (command instanceof RefreshType) {
             // do nothing
         } else if (command instanceof StringType) {
-            try {
-                RfLinkRawMessage message = new RfLinkRawMessage(((StringType) command).toString());
-                sendMessage(message);
-            } catch (RfLinkException e) {
-                logger.error("Unable to send command : {}", command, e);
-            }
+            RfLinkRawMessage message = new RfLinkRawMessage(((StringType) command).toString());
+            sendMessage(message, RfLinkTransmitPriority.HOUSEKEEPING, 1);
         } else {
             logger.debug("Bridge command type not supported : {}", command);
         }
@@ -114,22 +144,34 @@ public class RfLinkBridgeHandler extends BaseBridgeHandler {
     @Override
     public void dispose() {
         logger.debug("Handler disposed.");
+        connected = false;
 
         if (connector != null) {
             connector.removeEventListener(eventListener);
             connector.disconnect();
+            connector = null;
         }
 
-        if (connectorTask != null && !connectorTask.isCancelled()) {
-            connectorTask.cancel(true);
-            connectorTask = null;
+        if (supervisorTask != null && !supervisorTask.isCancelled()) {
+            supervisorTask.cancel(true);
+            supervisorTask = null;
         }
 
-        if (keepAliveTask != null && !keepAliveTask.isCancelled()) {
-            keepAliveTask.cancel(true);
-            keepAliveTask = null;
+        if (reconnectTask != null && !reconnectTask.isCancelled()) {
+            reconnectTask.cancel(true);
+            reconnectTask = null;
         }
 
+        if (statisticsTask != null && !statisticsTask.isCancelled()) {
+            statisticsTask.cancel(true);
+            statisticsTask = null;
+        }
+
+        transmitQueue.stop();
+        stopReceivePipeline();
+        stopDispatchStripes();
+        stopStateSnapshot();
+
         super.dispose();
     }
 
@@ -139,110 +181,415 @@ public class RfLinkBridgeHandler extends BaseBridgeHandler {
         updateStatus(ThingStatus.OFFLINE);
 
         configuration = getConfigAs(RfLinkBridgeConfiguration.class);
+        transmitQueue.setAgingThreshold(configuration.transmitAgingThreshold);
+        deduplicator.setWindow(configuration.dedupeWindow);
+        stopStateSnapshot();
+        stateStore = new RfLinkStateStore(configuration.stateStoreSize,
+                TimeUnit.HOURS.toMillis(Math.max(configuration.stateStoreIdleTimeout, 0)));
+        startStateSnapshot();
+        transmitQueue.setOfflineBuffer(configuration.offlineBufferSize, configuration.offlineBufferTtl,
+                configuration.offlineBufferCollapse);
+        // hold the commands until the first connection
+        transmitQueue.pause();
+        transmitQueue.start();
+        stopReceivePipeline();
+        stopDispatchStripes();
+        if (DISPATCH_MODE_STRIPED.equalsIgnoreCase(configuration.dispatchMode)) {
+            dispatchStripes = new RfLinkDispatchStripes(getThing().getUID().getId(), configuration.dispatchThreads);
+        } else if (DISPATCH_MODE_ISOLATED.equalsIgnoreCase(configuration.dispatchMode)) {
+            listenerMailboxes = new RfLinkListenerMailboxes(getThing().getUID().getId(), configuration.dispatchThreads,
+                    configuration.mailboxSize);
+        }
+        int receiveQueueSize = configuration.receiveQueueSize;
+        RfLinkReceivePipeline.OverflowPolicy overflowPolicy = RfLinkReceivePipeline.OverflowPolicy
+                .parse(configuration.receiveOverflowPolicy);
+        if (isNetworkBridge() && !isReplayBridge()) {
+            // the frames are read by the selector thread shared by the network bridges, which must never wait for the
+            // dispatch of one of them
+            if (receiveQueueSize <= 0) {
+                logger.warn("A network bridge needs a receive queue, using {} frames instead of {}",
+                        DEFAULT_RECEIVE_QUEUE_SIZE, receiveQueueSize);
+                receiveQueueSize = DEFAULT_RECEIVE_QUEUE_SIZE;
+            }
+            if (overflowPolicy == RfLinkReceivePipeline.OverflowPolicy.BLOCK) {
+                logger.warn("The block overflow policy would hold every network bridge, dropping the oldest frames");
+                overflowPolicy = RfLinkReceivePipeline.OverflowPolicy.DROP_OLDEST;
+            }
+        }
+        if (receiveQueueSize > 0) {
+            RfLinkReceivePipeline pipeline = new RfLinkReceivePipeline(getThing().getUID().getId(), receiveQueueSize,
+                    RfLinkReceivePipeline.WaitStrategy.parse(configuration.receiveWaitStrategy), overflowPolicy);
+            pipeline.start();
+            receivePipeline = pipeline;
+        }
 
-        if (connectorTask == null || connectorTask.isCancelled()) {
-            connectorTask = scheduler.scheduleWithFixedDelay(new Runnable() {
+        if (supervisorTask == null || supervisorTask.isCancelled()) {
+            supervisorTask = scheduler.scheduleWithFixedDelay(this::supervise, SUPERVISION_PERIOD, SUPERVISION_PERIOD,
+                    TimeUnit.SECONDS);
+            scheduleReconnect();
+        }
 
-                @Override
-                public void run() {
-                    logger.debug("Checking RFLink transceiver connection, thing status = {}", thing.getStatus());
-                    if (thing.getStatus() != ThingStatus.ONLINE) {
-                        connect();
-                    }
-                }
-            }, 0, 60, TimeUnit.SECONDS);
+        if (configuration.statisticsInterval > 0 && (statisticsTask == null || statisticsTask.isCancelled())) {
+            statisticsTask = scheduler.scheduleWithFixedDelay(() -> updateProperties(getStatistics()),
+                    configuration.statisticsInterval, configuration.statisticsInterval, TimeUnit.SECONDS);
         }
+    }
 
-        if (configuration.keepAlivePeriod > 0 && (keepAliveTask == null || keepAliveTask.isCancelled())) {
-            keepAliveTask = scheduler.scheduleWithFixedDelay(() -> {
-                if (thing.getStatus() == ThingStatus.ONLINE) {
-                    try {
-                        sendMessage(RfLinkRawMessage.PING);
-                    } catch (RfLinkException ex) {
-                        logger.error("PING call failed on Bridge", ex);
-                    }
-                }
+    /**
+     * Restores the states of the last run into the state store, before the things are initialized, then writes them
+     * periodically.
+     */
+    private void startStateSnapshot() {
+        if (configuration.snapshotInterval <= 0) {
+            return;
+        }
+        RfLinkStateStore store = stateStore;
+        RfLinkStateSnapshot snapshot = new RfLinkStateSnapshot(
+                Path.of(OpenHAB.getUserDataFolder(), "rflink", getThing().getUID().getId() + ".states"),
+                configuration.snapshotMaxSize * 1024L);
+        int records = snapshot.load(store);
+        logger.debug("Restored {} device states from {} records", store.size(), records);
+        stateSnapshot = snapshot;
+        snapshotTask = scheduler.scheduleWithFixedDelay(() -> snapshot.write(store), configuration.snapshotInterval,
+                configuration.snapshotInterval, TimeUnit.SECONDS);
+    }
+
+    private void stopStateSnapshot() {
+        if (snapshotTask != null && !snapshotTask.isCancelled()) {
+            snapshotTask.cancel(false);
+            snapshotTask = null;
+        }
+        RfLinkStateSnapshot snapshot = stateSnapshot;
+        stateSnapshot = null;
+        if (snapshot != null) {
+            snapshot.write(stateStore);
+        }
+    }
+
+    private void stopDispatchStripes() {
+        RfLinkDispatchStripes stripes = dispatchStripes;
+        dispatchStripes = null;
+        if (stripes != null) {
+            stripes.shutdown();
+        }
+        RfLinkListenerMailboxes mailboxes = listenerMailboxes;
+        listenerMailboxes = null;
+        if (mailboxes != null) {
+            mailboxes.shutdown();
+        }
+    }
 
-            }, configuration.keepAlivePeriod, configuration.keepAlivePeriod, TimeUnit.SECONDS);
+    private void stopReceivePipeline() {
+        RfLinkReceivePipeline pipeline = receivePipeline;
+        receivePipeline = null;
+        if (pipeline != null) {
+            pipeline.stop();
         }
     }
 
-    private void connect() {
-        logger.debug("Connecting to RFLink transceiver on {} port", configuration.serialPort);
+    private boolean isReplayBridge() {
+        return configuration.replayFile != null && !configuration.replayFile.isBlank();
+    }
+
+    private boolean isReplayFinished() {
+        RfLinkConnectorInterface currentConnector = connector;
+        return currentConnector instanceof RfLinkReplayConnector
+                && ((RfLinkReplayConnector) currentConnector).isFinished();
+    }
+
+    private boolean isNetworkBridge() {
+        return configuration.host != null && !configuration.host.isBlank();
+    }
+
+    private synchronized void connect() {
+        String device;
+        if (isReplayBridge()) {
+            device = configuration.replayFile;
+        } else if (isNetworkBridge()) {
+            String host = configuration.host.trim();
+            // an IPv6 address is bracketed, so that its port is not taken for part of it
+            if (host.indexOf(':') >= 0 && !host.startsWith("[")) {
+                host = "[" + host + "]";
+            }
+            device = host + ":" + configuration.port;
+        } else {
+            device = configuration.serialPort;
+        }
+        logger.debug("Connecting to RFLink transceiver on {} port", device);
 
         try {
 
             if (connector == null) {
-                connector = new RfLinkSerialConnector(serialPortManager);
+                if (isReplayBridge()) {
+                    connector = new RfLinkReplayConnector(configuration.replaySpeed);
+                } else if (isNetworkBridge()) {
+                    connector = new RfLinkTcpConnector();
+                } else {
+                    connector = new RfLinkSerialConnector(serialPortManager);
+                }
+                if (connector instanceof RfLinkBaseConnector) {
+                    ((RfLinkBaseConnector) connector).setAckTimeout(configuration.ackTimeout);
+                    ((RfLinkBaseConnector) connector).setReceivePipeline(receivePipeline);
+                }
             }
 
             if (connector != null) {
+                connected = false;
                 connector.disconnect();
-                connector.connect(configuration.serialPort, configuration.baudRate);
+                // listen before connecting: a replay starts delivering frames right away
                 connector.addEventListener(eventListener);
+                connector.connect(device, configuration.baudRate);
                 logger.debug("RFLink receiver started");
+                lastReceived = System.nanoTime();
+                pingSent = lastReceived;
+                reconnectAttempts = 0;
+                connections++;
+                connected = true;
                 updateStatus(ThingStatus.ONLINE);
+                transmitQueue.resume();
             } else {
                 logger.debug("connector is null");
             }
         } catch (Exception e) {
             logger.error("Connection to RFLink transceiver failed: {}", e.getMessage());
-            updateStatus(ThingStatus.OFFLINE);
+            connectionLost(ThingStatusDetail.NONE, null);
         } catch (UnsatisfiedLinkError e) {
             logger.error("Error occured when trying to load native library for OS '{}' version '{}', processor '{}'",
                     System.getProperty("os.name"), System.getProperty("os.version"), System.getProperty("os.arch"), e);
-            updateStatus(ThingStatus.OFFLINE);
+            connectionLost(ThingStatusDetail.NONE, null);
         }
     }
 
-    public synchronized void sendMessage(RfLinkMessage msg) throws RfLinkException {
-        logger.debug("sendMessage: {}", msg);
+    private synchronized void scheduleReconnect() {
+        if (supervisorTask == null) {
+            // disposed
+            return;
+        }
+        if (isReplayFinished()) {
+            // the capture is only replayed again when the bridge is initialized again
+            return;
+        }
+        if (reconnectTask == null || reconnectTask.isDone()) {
+            long delay = Math.min(RECONNECT_DELAY_MIN << Math.min(reconnectAttempts, 16), RECONNECT_DELAY_MAX);
+            reconnectAttempts++;
+            logger.debug("Reconnecting to RFLink transceiver in {}ms", delay);
+            reconnectTask = scheduler.schedule(this::reconnect, delay, TimeUnit.MILLISECONDS);
+        }
+    }
 
-        try {
-            transmitQueue.enqueue(msg);
-        } catch (IOException e) {
-            logger.error("I/O Error", e);
-            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.COMMUNICATION_ERROR, e.getMessage());
+    private synchronized void reconnect() {
+        if (thing.getStatus() != ThingStatus.ONLINE) {
+            connect();
+            if (thing.getStatus() != ThingStatus.ONLINE) {
+                // this task is still running, so it would prevent scheduling the next attempt
+                reconnectTask = null;
+                scheduleReconnect();
+            }
+        }
+    }
+
+    /**
+     * Periodic supervision of the connection: reconnects an offline bridge, sends a PING when no frame came in during
+     * the keep alive period, and flags the link as stalled when nothing came in during the RX silence timeout.
+     */
+    private void supervise() {
+        if (thing.getStatus() != ThingStatus.ONLINE) {
+            scheduleReconnect();
+            return;
+        }
+
+        long silence = System.nanoTime() - lastReceived;
+        int rxSilenceTimeout = configuration.rxSilenceTimeout;
+        if (rxSilenceTimeout > 0 && silence > TimeUnit.SECONDS.toNanos(rxSilenceTimeout)) {
+            logger.warn("No data received from RFLink transceiver for {}s, reconnecting",
+                    TimeUnit.NANOSECONDS.toSeconds(silence));
+            connectionLost(ThingStatusDetail.COMMUNICATION_ERROR,
+                    "No data received for " + TimeUnit.NANOSECONDS.toSeconds(silence) + "s");
+            scheduleReconnect();
+            return;
+        }
+
+        // PING only an idle link, within the silence timeout when there is no explicit keep alive period
+        int idlePeriod = configuration.keepAlivePeriod > 0 ? configuration.keepAlivePeriod : rxSilenceTimeout / 2;
+        if (idlePeriod > 0 && silence > TimeUnit.SECONDS.toNanos(idlePeriod)
+                && System.nanoTime() - pingSent > TimeUnit.SECONDS.toNanos(idlePeriod)) {
+            // don't PING again before the next idle period, even if this one is not written yet
+            pingSent = System.nanoTime();
+            sendMessage(RfLinkRawMessage.PING, RfLinkTransmitPriority.HOUSEKEEPING, 1);
+        }
+    }
+
+    /**
+     * Queues a user command for transmission. Returns immediately, the message is written by the transmit thread of
+     * the bridge.
+     *
+     * @return a future completed once the message has been written to the gateway
+     */
+    public CompletableFuture<Void> sendMessage(RfLinkMessage msg) {
+        return sendMessage(msg, RfLinkTransmitPriority.INTERACTIVE, 1);
+    }
+
+    /**
+     * Queues a message for transmission in the lane of the given priority. Repetitions after the first transmission
+     * are queued in the {@link RfLinkTransmitPriority#REPEAT} lane.
+     *
+     * @return a future completed once the message and all its repetitions have been written to the gateway
+     */
+    public CompletableFuture<Void> sendMessage(RfLinkMessage msg, RfLinkTransmitPriority priority, int repeats) {
+        return sendMessage(msg, priority, repeats, null, false);
+    }
+
+    /**
+     * Queues a command for transmission, coalesced with the previous commands for the same device and channel: a
+     * new command drops the transmissions of the previous replaceable command that are still queued, an urgent command
+     * those of all the previous commands for the same device.
+     *
+     * @param coalesceKey
+     *            device and channel the command applies to, as "device/channel", null to never coalesce
+     * @param replaceable
+     *            true for value commands (dimmer level, color) that a newer command makes obsolete, false for
+     *            on/off edges that only an urgent command drops
+     * @return a future completed once the message and all its repetitions have been written to the gateway or
+     *         superseded
+     */
+    public CompletableFuture<Void> sendMessage(RfLinkMessage msg, RfLinkTransmitPriority priority, int repeats,
+            String coalesceKey, boolean replaceable) {
+        logger.debug("sendMessage: {}, priority {}, repeats {}", msg, priority, repeats);
+        return transmitQueue.enqueue(msg, priority, repeats, coalesceKey, replaceable);
+    }
+
+    private void transmit(RfLinkMessage msg) throws IOException {
+        RfLinkConnectorInterface currentConnector = connector;
+        if (currentConnector == null) {
+            throw new IOException("Not connected, sending messages is not possible");
+        }
+        if (msg == RfLinkRawMessage.PING) {
+            pingSent = System.nanoTime();
+            pingPending = true;
+        }
+        currentConnector.sendMessages(msg.buildMessages());
+    }
+
+    private void transmitFailed(RfLinkMessage msg, IOException e) {
+        logger.error("I/O Error while transmitting '{}'", msg, e);
+        connectionLost(ThingStatusDetail.COMMUNICATION_ERROR, e.getMessage());
+        scheduleReconnect();
+    }
+
+    /**
+     * Takes the bridge offline and holds the transmit queue. The frames of the lost connection still queued for
+     * dispatch no longer bring the bridge online, only a new connection does.
+     */
+    private synchronized void connectionLost(ThingStatusDetail detail, String description) {
+        connected = false;
+        updateStatus(ThingStatus.OFFLINE, detail, description);
+        transmitQueue.pause();
+    }
+
+    /**
+     * Brings the bridge back online on a frame of the current connection, after a status change that didn't lose it.
+     */
+    private synchronized void frameOfConnectionReceived() {
+        if (connected && getThing().getStatus() != ThingStatus.ONLINE) {
+            updateStatus(ThingStatus.ONLINE);
+            transmitQueue.resume();
         }
     }
 
     private class MessageListener implements RfLinkEventListener {
 
+        @Override
+        public void frameRead() {
+            // the gateway is alive even when the dispatch of its frames lags behind
+            lastReceived = System.nanoTime();
+        }
+
         @Override
         public void packetReceived(String packet) {
+            long now = System.nanoTime();
+            if (pingPending && packet.endsWith(";PONG;")) {
+                pingPending = false;
+                pingRoundTrip = now - pingSent;
+                logger.debug("PONG received after {}ms", TimeUnit.NANOSECONDS.toMillis(pingRoundTrip));
+            }
+            if (deduplicator.isDuplicate(packet, now)) {
+                logger.trace("Repeated frame suppressed: {}", packet);
+            } else {
+                dispatch(packet);
+            }
+
+            // the queue is only paused while the bridge is offline
+            if (connected && getThing().getStatus() != ThingStatus.ONLINE) {
+                frameOfConnectionReceived();
+            }
+        }
+
+        private void dispatch(String packet) {
             try {
                 RfLinkMessage message = RfLinkMessageFactory.createMessage(packet);
-                logger.debug("Message received: {}, running against {} listeners", message,
-                        deviceStatusListeners.size());
-
-                for (DeviceMessageListener deviceStatusListener : deviceStatusListeners) {
-                    try {
-                        deviceStatusListener.onDeviceMessageReceived(getThing().getUID(), message);
-                    } catch (Exception e) {
-                        logger.error("An exception occurred while calling the DeviceStatusListener", e);
-                    }
+                message.storeState(stateStore);
+                String deviceId = message.getDeviceId();
+                DeviceMessageListener[] deviceListeners = deviceRoutes.get(deviceId);
+                logger.debug("Message received: {}, running against {} device and {} other listeners", message,
+                        deviceListeners.length, deviceStatusListeners.size());
+
+                RfLinkDispatchStripes stripes = dispatchStripes;
+                if (stripes == null) {
+                    notifyListeners(deviceListeners, message);
+                } else {
+                    stripes.execute(deviceId, () -> notifyListeners(deviceListeners, message));
                 }
-
             } catch (RfLinkNotImpException e) {
                 logger.debug("Message not supported, data: {}", packet.toString());
             } catch (RfLinkException e) {
                 logger.error("Error occured during packet receiving, data: {}; {}", packet.toString(), e.getMessage());
             }
+        }
 
-            updateStatus(ThingStatus.ONLINE);
+        private void notifyListeners(DeviceMessageListener[] deviceListeners, RfLinkMessage message) {
+            ThingUID bridgeUID = getThing().getUID();
+            for (DeviceMessageListener deviceStatusListener : deviceListeners) {
+                notifyListener(deviceStatusListener, bridgeUID, message);
+            }
+            for (DeviceMessageListener deviceStatusListener : deviceStatusListeners) {
+                notifyListener(deviceStatusListener, bridgeUID, message);
+            }
+        }
+
+        private void notifyListener(DeviceMessageListener listener, ThingUID bridgeUID, RfLinkMessage message) {
+            RfLinkListenerMailboxes mailboxes = listenerMailboxes;
+            if (mailboxes != null) {
+                mailboxes.deliver(listener, bridgeUID, message);
+                return;
+            }
+            try {
+                listener.onDeviceMessageReceived(bridgeUID, message);
+            } catch (Exception e) {
+                logger.error("An exception occurred while calling the DeviceStatusListener", e);
+            }
         }
 
         @Override
         public void errorOccured(String error) {
+            if (isReplayFinished()) {
+                logger.info("{}", error);
+                connectionLost(ThingStatusDetail.NONE, error);
+                return;
+            }
             logger.error("Error occured: {}", error);
-            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.COMMUNICATION_ERROR);
+            connectionLost(ThingStatusDetail.COMMUNICATION_ERROR, null);
+            scheduleReconnect();
         }
     }
 
+    /**
+     * Registers a listener of the messages of every device.
+     */
     public boolean registerDeviceStatusListener(DeviceMessageListener deviceStatusListener) {
         if (deviceStatusListener == null) {
             throw new IllegalArgumentException("It's not allowed to pass a null deviceStatusListener.");
         }
+        addMailbox(deviceStatusListener);
         return deviceStatusListeners.contains(deviceStatusListener) ? false
                 : deviceStatusListeners.add(deviceStatusListener);
     }
@@ -251,10 +598,115 @@ public class RfLinkBridgeHandler extends BaseBridgeHandler {
         if (deviceStatusListener == null) {
             throw new IllegalArgumentException("It's not allowed to pass a null deviceStatusListener.");
         }
-        return deviceStatusListeners.remove(deviceStatusListener);
+        boolean removed = deviceStatusListeners.remove(deviceStatusListener);
+        removeMailbox(deviceStatusListener);
+        return removed;
+    }
+
+    /**
+     * Registers a listener of the messages of one device only, found in constant time when a message is received.
+     */
+    public boolean registerDeviceStatusListener(String deviceId, DeviceMessageListener deviceStatusListener) {
+        if (deviceStatusListener == null) {
+            throw new IllegalArgumentException("It's not allowed to pass a null deviceStatusListener.");
+        }
+        addMailbox(deviceStatusListener);
+        return deviceRoutes.add(deviceId, deviceStatusListener);
+    }
+
+    public boolean unregisterDeviceStatusListener(String deviceId, DeviceMessageListener deviceStatusListener) {
+        if (deviceStatusListener == null) {
+            throw new IllegalArgumentException("It's not allowed to pass a null deviceStatusListener.");
+        }
+        boolean removed = deviceRoutes.remove(deviceId, deviceStatusListener);
+        removeMailbox(deviceStatusListener);
+        return removed;
+    }
+
+    private void addMailbox(DeviceMessageListener deviceStatusListener) {
+        RfLinkListenerMailboxes mailboxes = listenerMailboxes;
+        if (mailboxes != null) {
+            mailboxes.add(deviceStatusListener);
+        }
+    }
+
+    private void removeMailbox(DeviceMessageListener deviceStatusListener) {
+        RfLinkListenerMailboxes mailboxes = listenerMailboxes;
+        if (mailboxes != null) {
+            mailboxes.remove(deviceStatusListener);
+        }
+    }
+
+    /**
+     * @return true if a thing of this bridge is configured with the given device id
+     */
+    public boolean isDeviceConfigured(String deviceId) {
+        if (deviceRoutes.contains(deviceId)) {
+            return true;
+        }
+        // things not initialized yet
+        for (Thing child : getThing().getThings()) {
+            if (deviceId.equals(child.getConfiguration().get(RfLinkBindingConstants.DEVICE_ID))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the last known states of the devices of this bridge
+     */
+    public RfLinkStateStore getStateStore() {
+        return stateStore;
     }
 
     public RfLinkBridgeConfiguration getConfiguration() {
         return configuration;
     }
+
+    /**
+     * @return the current counters of the bridge, also published as bridge properties when statisticsInterval is set
+     */
+    public Map<String, String> getStatistics() {
+        Map<String, String> statistics = new TreeMap<>();
+        statistics.put("routedDevices", String.valueOf(deviceRoutes.size()));
+        long absorbedUpdates = 0;
+        for (Thing thing : getThing().getThings()) {
+            if (thing.getHandler() instanceof RfLinkHandler) {
+                absorbedUpdates += ((RfLinkHandler) thing.getHandler()).getAbsorbedUpdates();
+            }
+        }
+        statistics.put("absorbedUpdates", String.valueOf(absorbedUpdates));
+        statistics.put("reconnects", String.valueOf(Math.max(connections - 1, 0)));
+        long roundTrip = pingRoundTrip;
+        statistics.put("pingRoundTripMs",
+                String.valueOf(roundTrip < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(roundTrip)));
+        // the decoder cache is shared by all bridges, so are its counters
+        statistics.put("globalDecoderCacheHits", String.valueOf(RfLinkMessageFactory.getDecoderCacheHits()));
+        statistics.put("globalDecoderCacheMisses", String.valueOf(RfLinkMessageFactory.getDecoderCacheMisses()));
+        deduplicator.collectStatistics(statistics);
+        stateStore.collectStatistics(statistics);
+        RfLinkStateSnapshot snapshot = stateSnapshot;
+        if (snapshot != null) {
+            snapshot.collectStatistics(statistics);
+        }
+        transmitQueue.collectStatistics(statistics);
+        RfLinkReceivePipeline pipeline = receivePipeline;
+        if (pipeline != null) {
+            pipeline.collectStatistics(statistics);
+        }
+        RfLinkDispatchStripes stripes = dispatchStripes;
+        if (stripes != null) {
+            stripes.collectStatistics(statistics);
+        }
+        RfLinkListenerMailboxes mailboxes = listenerMailboxes;
+        if (mailboxes != null) {
+            mailboxes.collectStatistics(statistics);
+        }
+        RfLinkConnectorInterface currentConnector = connector;
+        if (currentConnector instanceof RfLinkBaseConnector) {
+            ((RfLinkBaseConnector) currentConnector).collectStatistics(statistics);
+        }
+        return statistics;
+    }
 }
@@ -0,0 +1,152 @@
+/**
+ * Copyright (c) 2010-2023 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.rflink.handler;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.openhab.binding.rflink.internal.DeviceMessageListener;
+
+/**
+ * Routing table of a bridge, from a device id to the listeners of that device.
+ *
+ * Devices are spread by the hash of their id over buckets of immutable chains; ids sharing a hash are told apart by
+ * comparing the strings. Lookups from the reception thread take no lock and allocate nothing. Registrations are
+ * serialized and only copy the chain of one bucket, so registering N things costs O(N).
+ *
+ * @author Cyril Cauchois - Initial contribution
+ */
+class RfLinkDeviceRoutes {
+
+    static final DeviceMessageListener[] NO_LISTENER = new DeviceMessageListener[0];
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Immutable node of a bucket chain.
+     */
+    private static class Route {
+        final int hash;
+        final String deviceId;
+        final DeviceMessageListener[] listeners;
+        final Route next;
+
+        Route(int hash, String deviceId, DeviceMessageListener[] listeners, Route next) {
+            this.hash = hash;
+            this.deviceId = deviceId;
+            this.listeners = listeners;
+            this.next = next;
+        }
+    }
+
+    private volatile AtomicReferenceArray<Route> buckets = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+
+    // guarded by this
+    private int size;
+
+    private static int hash(String deviceId) {
+        int h = deviceId.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return the listeners of the device, an empty array if there is none
+     */
+    DeviceMessageListener[] get(String deviceId) {
+        int hash = hash(deviceId);
+        AtomicReferenceArray<Route> table = buckets;
+        for (Route route = table.get(hash & (table.length() - 1)); route != null; route = route.next) {
+            if (route.hash == hash && route.deviceId.equals(deviceId)) {
+                return route.listeners;
+            }
+        }
+        return NO_LISTENER;
+    }
+
+    boolean contains(String deviceId) {
+        return get(deviceId).length > 0;
+    }
+
+    /**
+     * @return false if the listener was already registered for the device
+     */
+    synchronized boolean add(String deviceId, DeviceMessageListener listener) {
+        DeviceMessageListener[] listeners = get(deviceId);
+        for (DeviceMessageListener registered : listeners) {
+            if (registered == listener) {
+                return false;
+            }
+        }
+        DeviceMessageListener[] updated = Arrays.copyOf(listeners, listeners.length + 1);
+        updated[listeners.length] = listener;
+        if (listeners.length == 0) {
+            size++;
+            if (size > buckets.length() * 3 / 4) {
+                resize();
+            }
+        }
+        put(deviceId, updated);
+        return true;
+    }
+
+    /**
+     * @return false if the listener was not registered for the device
+     */
+    synchronized boolean remove(String deviceId, DeviceMessageListener listener) {
+        DeviceMessageListener[] listeners = get(deviceId);
+        int index = Arrays.asList(listeners).indexOf(listener);
+        if (index < 0) {
+            return false;
+        }
+        DeviceMessageListener[] updated = new DeviceMessageListener[listeners.length - 1];
+        System.arraycopy(listeners, 0, updated, 0, index);
+        System.arraycopy(listeners, index + 1, updated, index, updated.length - index);
+        if (updated.length == 0) {
+            size--;
+        }
+        put(deviceId, updated);
+        return true;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Replaces the listeners of a device by a new chain for its bucket, removing the device when there is none left.
+     */
+    private void put(String deviceId, DeviceMessageListener[] listeners) {
+        int hash = hash(deviceId);
+        AtomicReferenceArray<Route> table = buckets;
+        int index = hash & (table.length() - 1);
+        Route chain = listeners.length == 0 ? null : new Route(hash, deviceId, listeners, null);
+        for (Route route = table.get(index); route != null; route = route.next) {
+            if (route.hash != hash || !route.deviceId.equals(deviceId)) {
+                chain = new Route(route.hash, route.deviceId, route.listeners, chain);
+            }
+        }
+        table.set(index, chain);
+    }
+
+    private void resize() {
+        AtomicReferenceArray<Route> table = buckets;
+        AtomicReferenceArray<Route> resized = new AtomicReferenceArray<>(table.length() * 2);
+        for (int i = 0; i < table.length(); i++) {
+            for (Route route = table.get(i); route != null; route = route.next) {
+                int index = route.hash & (resized.length() - 1);
+                resized.set(index, new Route(route.hash, route.deviceId, route.listeners, resized.get(index)));
+            }
+        }
+        buckets = resized;
+    }
+}
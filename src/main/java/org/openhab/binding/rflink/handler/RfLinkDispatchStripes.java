@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2010-2023 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.rflink.handler;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single threaded executors (stripes) running the listeners of the received messages: the messages of a device are
+ * always handled by the same stripe, in order, while the messages of different devices are handled in parallel.
+ *
+ * The backlog of a stripe is bounded: when it is full, the dispatch thread waits for room (running the task itself
+ * would break the order of the device), which holds the receive pipeline until the stripe catches up.
+ *
+ * @author Cyril Cauchois - Initial contribution
+ */
+class RfLinkDispatchStripes {
+
+    private static final int BACKLOG_CAPACITY = 1024;
+
+    private final ThreadPoolExecutor[] stripes;
+
+    /**
+     * @param threads
+     *            number of stripes, 0 for the number of processors
+     */
+    RfLinkDispatchStripes(String name, int threads) {
+        int count = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        stripes = new ThreadPoolExecutor[count];
+        for (int i = 0; i < count; i++) {
+            String threadName = "OH-binding-rflink-dispatch-" + name + "-" + i;
+            stripes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(BACKLOG_CAPACITY), runnable -> {
+                        Thread thread = new Thread(runnable, threadName);
+                        thread.setDaemon(true);
+                        return thread;
+                    }, RfLinkDispatchStripes::waitForRoom);
+        }
+    }
+
+    private static void waitForRoom(Runnable task, ThreadPoolExecutor stripe) {
+        if (!stripe.isShutdown()) {
+            try {
+                stripe.getQueue().put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Runs a task on the stripe of a device, after the previous tasks of that device.
+     */
+    void execute(String deviceId, Runnable task) {
+        int hash = deviceId == null ? 0 : deviceId.hashCode();
+        // spread the high bits, device ids often only differ by their last characters
+        hash ^= hash >>> 16;
+        stripes[Math.floorMod(hash, stripes.length)].execute(task);
+    }
+
+    void shutdown() {
+        for (ThreadPoolExecutor stripe : stripes) {
+            stripe.shutdownNow();
+        }
+    }
+
+    void collectStatistics(Map<String, String> statistics) {
+        for (int i = 0; i < stripes.length; i++) {
+            statistics.put("dispatchStripe" + i + "Backlog", String.valueOf(stripes[i].getQueue().size()));
+            statistics.put("dispatchStripe" + i + "Completed", String.valueOf(stripes[i].getCompletedTaskCount()));
+        }
+    }
+}
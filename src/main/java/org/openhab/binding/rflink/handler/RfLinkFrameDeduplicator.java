@@ -0,0 +1,194 @@
+/**
+ * Copyright (c) 2010-2023 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.rflink.handler;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Suppression of the repeated frames of a device: most 433MHz sensors send each reading 2 to 4 times in a row, and the
+ * gateway reports every copy.
+ *
+ * A frame is a duplicate when the previous frame of the same device (protocol and ID field) had the same payload
+ * (everything after the sequence number) and was received less than the window ago. The raw frame is scanned and
+ * hashed in place, so a duplicate is dropped before any object is created. Frames without an ID field (gateway
+ * responses) are never suppressed.
+ *
+ * The devices are held in an open addressing table of primitives, cleared when full.
+ *
+ * @author Cyril Cauchois - Initial contribution
+ */
+class RfLinkFrameDeduplicator {
+
+    private static final String NODE_NUMBER_FROM_GATEWAY = "20;";
+    private static final String ID_FIELD = ";ID=";
+    private static final char FIELDS_DELIMITER = ';';
+
+    // 0 marks a free slot, so that hash value is remapped
+    private static final long FREE = 0;
+    private static final long INITIAL = 0xcbf29ce484222325L;
+    private static final int CAPACITY = 1024;
+    private static final int PROTOCOLS = 64;
+
+    private final long[] devices = new long[CAPACITY * 2];
+    private final long[] payloads = new long[CAPACITY * 2];
+    private final long[] receiveTimes = new long[CAPACITY * 2];
+    private int size;
+
+    // suppressed frames per protocol, the name is only extracted at the first suppression of the protocol
+    private final long[] protocolHashes = new long[PROTOCOLS];
+    private final String[] protocolNames = new String[PROTOCOLS];
+    private final long[] suppressed = new long[PROTOCOLS];
+
+    private volatile long windowNanos;
+
+    /**
+     * @param window
+     *            time in milliseconds during which identical frames of a device are suppressed, 0 to disable
+     */
+    void setWindow(int window) {
+        windowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(window, 0));
+        clear();
+    }
+
+    /**
+     * Records a received frame.
+     *
+     * @param now
+     *            reception time of the frame, in nanoseconds
+     * @return true if the frame repeats the previous frame of its device and has to be dropped
+     */
+    boolean isDuplicate(String frame, long now) {
+        long window = windowNanos;
+        if (window == 0 || !frame.startsWith(NODE_NUMBER_FROM_GATEWAY)) {
+            return false;
+        }
+        int protocolStart = frame.indexOf(FIELDS_DELIMITER, NODE_NUMBER_FROM_GATEWAY.length()) + 1;
+        if (protocolStart == 0) {
+            return false;
+        }
+        int protocolEnd = frame.indexOf(FIELDS_DELIMITER, protocolStart);
+        int idStart = frame.indexOf(ID_FIELD, protocolStart);
+        if (protocolEnd < 0 || idStart < 0) {
+            return false;
+        }
+        idStart += ID_FIELD.length();
+        int idEnd = frame.indexOf(FIELDS_DELIMITER, idStart);
+        if (idEnd < 0) {
+            idEnd = frame.length();
+        }
+        long protocol = hash(INITIAL, frame, protocolStart, protocolEnd);
+        long device = nonFree(hash(protocol, frame, idStart, idEnd));
+        long payload = hash(INITIAL, frame, protocolStart, frame.length());
+
+        synchronized (this) {
+            int slot = find(device);
+            if (devices[slot] == device) {
+                boolean duplicate = payloads[slot] == payload && now - receiveTimes[slot] < window;
+                if (duplicate) {
+                    countSuppressed(protocol, frame, protocolStart, protocolEnd);
+                } else {
+                    // the window starts at the first copy, a frame repeated continuously still goes through
+                    payloads[slot] = payload;
+                    receiveTimes[slot] = now;
+                }
+                return duplicate;
+            }
+            if (size >= CAPACITY) {
+                clearDevices();
+                slot = find(device);
+            }
+            devices[slot] = device;
+            payloads[slot] = payload;
+            receiveTimes[slot] = now;
+            size++;
+            return false;
+        }
+    }
+
+    /**
+     * 64 bits FNV-1a hash of a region of the frame.
+     */
+    private static long hash(long hash, String frame, int start, int end) {
+        for (int i = start; i < end; i++) {
+            hash ^= frame.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static long nonFree(long hash) {
+        return hash == FREE ? 1 : hash;
+    }
+
+    private int find(long device) {
+        int mask = devices.length - 1;
+        int slot = (int) (device ^ (device >>> 32)) & mask;
+        while (devices[slot] != FREE && devices[slot] != device) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void countSuppressed(long protocol, String frame, int start, int end) {
+        protocol = nonFree(protocol);
+        int mask = PROTOCOLS - 1;
+        int slot = (int) (protocol ^ (protocol >>> 32)) & mask;
+        for (int probe = 0; probe < PROTOCOLS; probe++) {
+            if (protocolHashes[slot] == FREE) {
+                protocolHashes[slot] = protocol;
+                protocolNames[slot] = sanitize(frame, start, end);
+            }
+            if (protocolHashes[slot] == protocol) {
+                suppressed[slot]++;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * @return the protocol name restricted to letters, digits, '_' and '-', as used in the statistics
+     */
+    private static String sanitize(String frame, int start, int end) {
+        StringBuilder name = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = frame.charAt(i);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_' || c == '-') {
+                name.append(c);
+            }
+        }
+        return name.toString();
+    }
+
+    private void clearDevices() {
+        Arrays.fill(devices, FREE);
+        size = 0;
+    }
+
+    synchronized void clear() {
+        clearDevices();
+    }
+
+    synchronized void collectStatistics(Map<String, String> statistics) {
+        long total = 0;
+        for (int slot = 0; slot < PROTOCOLS; slot++) {
+            if (protocolHashes[slot] != FREE) {
+                statistics.put("rxDuplicates" + protocolNames[slot], String.valueOf(suppressed[slot]));
+                total += suppressed[slot];
+            }
+        }
+        statistics.put("rxDuplicates", String.valueOf(total));
+    }
+}
@@ -14,15 +14,21 @@ package org.openhab.binding.rflink.handler;
 
 import java.math.BigDecimal;
 import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jdt.annotation.NonNull;
+import org.openhab.binding.rflink.RfLinkBindingConstants;
 import org.openhab.binding.rflink.config.RfLinkDeviceConfiguration;
 import org.openhab.binding.rflink.exceptions.RfLinkException;
 import org.openhab.binding.rflink.exceptions.RfLinkNotImpException;
 import org.openhab.binding.rflink.internal.DeviceMessageListener;
+import org.openhab.binding.rflink.internal.RfLinkStateStore;
 import org.openhab.binding.rflink.messages.RfLinkMessage;
 import org.openhab.binding.rflink.messages.RfLinkMessageFactory;
+import org.openhab.core.library.types.DecimalType;
 import org.openhab.core.thing.Bridge;
+import org.openhab.core.thing.Channel;
 import org.openhab.core.thing.ChannelUID;
 import org.openhab.core.thing.Thing;
 import org.openhab.core.thing.ThingStatus;
@@ -54,6 +60,15 @@ public class RfLinkHandler extends BaseThingHandler implements DeviceMessageList
 
     private RfLinkDeviceConfiguration config;
 
+    // device id this handler is registered for at the bridge
+    private String registeredDeviceId;
+
+    private RfLinkStateFilter stateFilter = new RfLinkStateFilter(null, 0);
+
+    // numeric samples published once per window, null to publish every sample
+    private RfLinkSampleAggregator aggregator;
+    private ScheduledFuture<?> aggregationTask;
+
     public RfLinkHandler(Thing thing) {
         super(thing);
     }
@@ -64,21 +79,22 @@ public class RfLinkHandler extends BaseThingHandler implements DeviceMessageList
 
         if (bridgeHandler != null) {
             if (command instanceof RefreshType) {
-                // Not supported
+                refreshChannel(channelUID);
             } else {
                 try {
                     RfLinkMessage message = RfLinkMessageFactory
                             .createMessageForSendingToThing(getThing().getThingTypeUID());
+                    message.setStateStore(bridgeHandler.getStateStore());
                     message.initializeFromChannel(getConfigAs(RfLinkDeviceConfiguration.class), channelUID, command);
-                    updateThingStates(message);
+                    updateThingStates(message, false);
                     int repeats = 1;
                     if (getThing().getConfiguration().containsKey("repeats")) {
                         repeats = ((BigDecimal) getThing().getConfiguration().get("repeats")).intValue();
                     }
                     repeats = Math.min(Math.max(repeats, 1), 20);
-                    for (int i = 0; i < repeats; i++) {
-                        bridgeHandler.sendMessage(message);
-                    }
+                    // a new dimmer level or color makes the previous one obsolete, on/off edges are always sent
+                    bridgeHandler.sendMessage(message, RfLinkTransmitPriority.forCommand(command), repeats,
+                            config.deviceId + "/" + channelUID.getId(), command instanceof DecimalType);
                 } catch (RfLinkNotImpException e) {
                     logger.error("Message not supported: {}", e.getMessage());
                 } catch (RfLinkException e) {
@@ -94,6 +110,8 @@ public class RfLinkHandler extends BaseThingHandler implements DeviceMessageList
     public void initialize() {
         config = getConfigAs(RfLinkDeviceConfiguration.class);
         logger.debug("Initializing thing {}, deviceId={}", getThing().getUID(), config.deviceId);
+        stateFilter = new RfLinkStateFilter(config.deadbands, config.maxQuietInterval);
+        startAggregation();
         Bridge currentBridge = getBridge();
         if (currentBridge == null) {
             initializeBridge(null, null);
@@ -121,7 +139,12 @@ public class RfLinkHandler extends BaseThingHandler implements DeviceMessageList
             updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.CONFIGURATION_ERROR, "RFLink device missing deviceId");
         } else if (thingHandler != null && bridgeStatus != null) {
             bridgeHandler = (RfLinkBridgeHandler) thingHandler;
-            bridgeHandler.registerDeviceStatusListener(this);
+            registeredDeviceId = config.deviceId;
+            bridgeHandler.registerDeviceStatusListener(registeredDeviceId, this);
+            // last known states, possibly restored from the previous run
+            for (Channel channel : getThing().getChannels()) {
+                refreshChannel(channel.getUID());
+            }
 
             if (bridgeStatus == ThingStatus.ONLINE) {
                 updateStatus(ThingStatus.ONLINE);
@@ -138,13 +161,46 @@ public class RfLinkHandler extends BaseThingHandler implements DeviceMessageList
     @Override
     public void dispose() {
         logger.debug("Thing {} disposed.", getThing().getUID());
-        if (bridgeHandler != null) {
-            bridgeHandler.unregisterDeviceStatusListener(this);
+        if (bridgeHandler != null && registeredDeviceId != null) {
+            bridgeHandler.unregisterDeviceStatusListener(registeredDeviceId, this);
         }
         bridgeHandler = null;
+        stopAggregation();
         super.dispose();
     }
 
+    private void startAggregation() {
+        stopAggregation();
+        RfLinkSampleAggregator.Mode mode = RfLinkSampleAggregator.Mode.parse(config.aggregation);
+        if (mode != null && config.aggregationWindow > 0) {
+            RfLinkSampleAggregator currentAggregator = new RfLinkSampleAggregator(mode);
+            aggregator = currentAggregator;
+            aggregationTask = scheduler.scheduleWithFixedDelay(() -> currentAggregator.flush(this::publishAggregate),
+                    config.aggregationWindow, config.aggregationWindow, TimeUnit.SECONDS);
+        }
+    }
+
+    private void stopAggregation() {
+        ScheduledFuture<?> task = aggregationTask;
+        if (task != null) {
+            task.cancel(false);
+            aggregationTask = null;
+        }
+        aggregator = null;
+    }
+
+    private void publishAggregate(String channel, double value) {
+        publishState(channel, new DecimalType(value), System.nanoTime(), true);
+    }
+
+    /**
+     * @return the number of received samples that did not lead to an update because of the aggregation
+     */
+    public long getAbsorbedUpdates() {
+        RfLinkSampleAggregator currentAggregator = aggregator;
+        return currentAggregator == null ? 0 : currentAggregator.getAbsorbed();
+    }
+
     @Override
     public void onDeviceMessageReceived(ThingUID bridge, RfLinkMessage message) {
 
@@ -156,7 +212,7 @@ public class RfLinkHandler extends BaseThingHandler implements DeviceMessageList
                 logger.debug("Message from bridge {} from device [{}] type [{}] matched", bridge.toString(), id,
                         message.getClass().getSimpleName());
                 updateStatus(ThingStatus.ONLINE);
-                updateThingStates(message);
+                updateThingStates(message, true);
 
             }
 
@@ -165,16 +221,94 @@ public class RfLinkHandler extends BaseThingHandler implements DeviceMessageList
         }
     }
 
-    private void updateThingStates(RfLinkMessage message) {
+    /**
+     * Publishes the last known state of a channel, without any RF traffic, unless it is older than the refresh max age
+     * of the bridge.
+     */
+    private void refreshChannel(ChannelUID channelUID) {
+        RfLinkStateStore.StoredState stored = bridgeHandler.getStateStore().get(config.deviceId, channelUID.getId());
+        if (stored == null) {
+            logger.debug("No known state to refresh channel {}", channelUID);
+            return;
+        }
+        long maxAge = TimeUnit.MINUTES.toMillis(bridgeHandler.getConfiguration().refreshMaxAge);
+        if (maxAge > 0 && System.currentTimeMillis() - stored.getUpdateTime() > maxAge) {
+            logger.debug("Known state of channel {} too old to be refreshed", channelUID);
+            return;
+        }
+        updateState(channelUID, stored.getState());
+    }
+
+    /**
+     * @param filtered
+     *            true to publish only the changed states of a received message, false to publish all the states (of a
+     *            command)
+     */
+    private void updateThingStates(RfLinkMessage message, boolean filtered) {
         @NonNull
         Map<@NonNull String, @NonNull State> map = message.getStates();
+        RfLinkBridgeHandler currentBridgeHandler = bridgeHandler;
+        if (currentBridgeHandler != null) {
+            currentBridgeHandler.getStateStore().putAll(config.deviceId, map);
+        }
+        long now = System.nanoTime();
+        boolean updated = false;
         for (String channel : map.keySet()) {
-            logger.debug("Update channel: {}, state: {}", channel, map.get(channel));
-
             State stt = map.get(channel);
-            if (stt != null) {
-                updateState(new ChannelUID(getThing().getUID(), channel), stt);
+            // the observation time only follows the other channels
+            if (stt == null || RfLinkBindingConstants.CHANNEL_OBSERVATION_TIME.equals(channel)) {
+                continue;
             }
+            if (filtered && stt instanceof DecimalType && isAggregated(channel, ((DecimalType) stt).doubleValue())) {
+                continue;
+            }
+            updated |= publishState(channel, stt, now, filtered);
+        }
+        State observationTime = map.get(RfLinkBindingConstants.CHANNEL_OBSERVATION_TIME);
+        if (observationTime != null && (updated || !stateFilter.isEnabled())) {
+            updateState(new ChannelUID(getThing().getUID(), RfLinkBindingConstants.CHANNEL_OBSERVATION_TIME),
+                    observationTime);
+        }
+    }
+
+    /**
+     * @return true if the sample was added to the aggregation window, false if it has to be published now
+     */
+    private boolean isAggregated(String channel, double value) {
+        RfLinkSampleAggregator currentAggregator = aggregator;
+        if (currentAggregator == null) {
+            return false;
+        }
+        // instant power and gust spikes bypass the window
+        if (config.spikeThreshold > 0 && value > config.spikeThreshold
+                && (RfLinkBindingConstants.CHANNEL_INSTANT_POWER.equals(channel)
+                        || RfLinkBindingConstants.CHANNEL_GUST.equals(channel))) {
+            return false;
+        }
+        return currentAggregator.add(channel, value, isLastOnly(channel));
+    }
+
+    /**
+     * @return true for the channels whose samples can't be averaged: a direction (the mean of 350 and 10 degrees is
+     *         not 180) or a cumulative counter
+     */
+    private static boolean isLastOnly(String channel) {
+        return RfLinkBindingConstants.CHANNEL_WIND_DIRECTION.equals(channel)
+                || RfLinkBindingConstants.CHANNEL_TOTAL_USAGE.equals(channel)
+                || RfLinkBindingConstants.CHANNEL_TOTAL_AMP_HOURS.equals(channel)
+                || RfLinkBindingConstants.CHANNEL_RAIN_TOTAL.equals(channel);
+    }
+
+    private boolean publishState(String channel, State state, long now, boolean filtered) {
+        if (filtered && !stateFilter.accept(channel, state, now)) {
+            logger.trace("Unchanged channel: {}, state: {}", channel, state);
+            return false;
+        }
+        if (!filtered) {
+            stateFilter.record(channel, state, now);
         }
+        logger.debug("Update channel: {}, state: {}", channel, state);
+        updateState(new ChannelUID(getThing().getUID(), channel), state);
+        return true;
     }
 }
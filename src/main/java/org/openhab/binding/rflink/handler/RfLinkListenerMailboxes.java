@@ -0,0 +1,230 @@
+/**
+ * Copyright (c) 2010-2023 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.rflink.handler;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openhab.binding.rflink.internal.DeviceMessageListener;
+import org.openhab.binding.rflink.messages.RfLinkMessage;
+import org.openhab.core.thing.ThingUID;
+import org.openhab.core.thing.binding.ThingHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded mailbox of each listener of the received messages, so that a slow listener only builds up its own backlog. A
+ * message that doesn't fit in the mailbox of a listener is dropped for that listener and counted.
+ *
+ * The mailboxes are drained by a bounded pool of threads shared by the listeners of the bridge: a mailbox is scheduled
+ * on the pool by its first pending message and runs on one thread at a time, so the messages of a listener stay in
+ * order. A mailbox hands its thread over after a batch of messages, so that a busy listener doesn't hold it. A blocked
+ * listener holds one thread of the pool until it returns.
+ *
+ * A removed listener is remembered until it is added again, so that a message already on its way to it (from a
+ * dispatch thread or a stripe) is dropped instead of reopening a mailbox for a disposed handler.
+ *
+ * @author Cyril Cauchois - Initial contribution
+ */
+class RfLinkListenerMailboxes {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RfLinkListenerMailboxes.class);
+
+    // weight of a new sample in the latency average
+    private static final int LATENCY_SMOOTHING = 8;
+
+    // messages handled before a mailbox hands its thread over to the next scheduled mailbox
+    private static final int BATCH_SIZE = 32;
+
+    // idle time after which a thread of the pool stops
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private static class Delivery {
+        final ThingUID bridge;
+        final RfLinkMessage message;
+        final long enqueuedNanos;
+
+        Delivery(ThingUID bridge, RfLinkMessage message, long enqueuedNanos) {
+            this.bridge = bridge;
+            this.message = message;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+
+    private class Mailbox implements Runnable {
+        final DeviceMessageListener listener;
+        final String name;
+        final BlockingQueue<Delivery> deliveries = new ArrayBlockingQueue<>(capacity);
+        // true from the scheduling of the mailbox on the pool until it is drained
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        volatile boolean stopped;
+        volatile long dropped;
+        volatile long averageLatencyNanos;
+        volatile long maxLatencyNanos;
+
+        Mailbox(DeviceMessageListener listener) {
+            this.listener = listener;
+            this.name = nameOf(listener);
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < BATCH_SIZE && !stopped; i++) {
+                Delivery delivery = deliveries.poll();
+                if (delivery == null) {
+                    break;
+                }
+                try {
+                    listener.onDeviceMessageReceived(delivery.bridge, delivery.message);
+                } catch (Exception e) {
+                    LOGGER.error("An exception occurred while calling the DeviceStatusListener", e);
+                }
+                // from the reception to the end of the processing by the listener
+                long latency = System.nanoTime() - delivery.enqueuedNanos;
+                long average = averageLatencyNanos;
+                averageLatencyNanos = average == 0 ? latency : average + (latency - average) / LATENCY_SMOOTHING;
+                if (latency > maxLatencyNanos) {
+                    maxLatencyNanos = latency;
+                }
+            }
+            scheduled.set(false);
+            // a message posted before the flag was cleared found the mailbox still scheduled
+            if (!deliveries.isEmpty()) {
+                schedule(this);
+            }
+        }
+
+        void stop() {
+            stopped = true;
+            deliveries.clear();
+        }
+    }
+
+    private final int capacity;
+    private final ThreadPoolExecutor pool;
+    private final Map<DeviceMessageListener, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final Set<DeviceMessageListener> removed = ConcurrentHashMap.newKeySet();
+    private volatile boolean shutdown;
+
+    /**
+     * @param threads
+     *            number of threads draining the mailboxes, 0 for the number of processors
+     * @param capacity
+     *            maximal number of messages waiting for each listener
+     */
+    RfLinkListenerMailboxes(String bridgeName, int threads, int capacity) {
+        this.capacity = Math.max(capacity, 1);
+        int count = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger index = new AtomicInteger();
+        // the queue holds each mailbox at most once
+        pool = new ThreadPoolExecutor(count, count, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable,
+                            "OH-binding-rflink-listener-" + bridgeName + "-" + index.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Posts a message to the mailbox of a listener, created at the first message, and schedules the mailbox unless it
+     * is already.
+     */
+    void deliver(DeviceMessageListener listener, ThingUID bridge, RfLinkMessage message) {
+        if (shutdown) {
+            return;
+        }
+        // atomic with remove(): a listener removed meanwhile gets no new mailbox
+        Mailbox mailbox = mailboxes.computeIfAbsent(listener, key -> removed.contains(key) ? null : open(key));
+        if (mailbox == null) {
+            LOGGER.trace("Message to a removed listener dropped: {}", message);
+        } else if (mailbox.deliveries.offer(new Delivery(bridge, message, System.nanoTime()))) {
+            schedule(mailbox);
+        } else {
+            mailbox.dropped++;
+            LOGGER.debug("Mailbox of {} full, message dropped: {}", mailbox.name, message);
+        }
+    }
+
+    private Mailbox open(DeviceMessageListener listener) {
+        return new Mailbox(listener);
+    }
+
+    private void schedule(Mailbox mailbox) {
+        if (!mailbox.stopped && mailbox.scheduled.compareAndSet(false, true)) {
+            try {
+                pool.execute(mailbox);
+            } catch (RejectedExecutionException e) {
+                // shut down
+                mailbox.scheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Accepts the messages of a listener again after {@link #remove(DeviceMessageListener)}.
+     */
+    void add(DeviceMessageListener listener) {
+        removed.remove(listener);
+    }
+
+    /**
+     * Closes the mailbox of a listener, its pending messages and the messages delivered later are dropped.
+     */
+    void remove(DeviceMessageListener listener) {
+        removed.add(listener);
+        Mailbox mailbox = mailboxes.remove(listener);
+        if (mailbox != null) {
+            mailbox.stop();
+        }
+    }
+
+    void shutdown() {
+        shutdown = true;
+        for (DeviceMessageListener listener : mailboxes.keySet()) {
+            remove(listener);
+        }
+        pool.shutdownNow();
+    }
+
+    private static String nameOf(DeviceMessageListener listener) {
+        String name = listener instanceof ThingHandler ? ((ThingHandler) listener).getThing().getUID().getId()
+                : listener.getClass().getSimpleName();
+        return name.replaceAll("[^A-Za-z0-9]", "");
+    }
+
+    /**
+     * Adds the backlog, dropped messages and latencies of each listener to the given statistics.
+     */
+    void collectStatistics(Map<String, String> statistics) {
+        mailboxes.values().forEach(mailbox -> {
+            String prefix = "listener" + mailbox.name;
+            statistics.put(prefix + "Backlog", String.valueOf(mailbox.deliveries.size()));
+            statistics.put(prefix + "Dropped", String.valueOf(mailbox.dropped));
+            statistics.put(prefix + "LatencyUs",
+                    String.valueOf(TimeUnit.NANOSECONDS.toMicros(mailbox.averageLatencyNanos)));
+            statistics.put(prefix + "MaxLatencyUs",
+                    String.valueOf(TimeUnit.NANOSECONDS.toMicros(mailbox.maxLatencyNanos)));
+        });
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2010-2023 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.rflink.handler;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ObjDoubleConsumer;
+
+/**
+ * Aggregation of the numeric samples of the channels of a chatty thing (energy, wind), published once per window.
+ *
+ * Each channel keeps the running sum, minimum, maximum, count and last value of the samples of the window, so every
+ * sample of the window is accounted for and adding a sample allocates nothing once the channel is known. Channels whose
+ * values can't be combined, such as a direction or a cumulative counter, always publish their last sample.
+ *
+ * @author Cyril Cauchois - Initial contribution
+ */
+class RfLinkSampleAggregator {
+
+    private static final int MAX_CHANNELS = 16;
+
+    enum Mode {
+        LAST,
+        MEAN,
+        MIN,
+        MAX;
+
+        /**
+         * @return the mode of the configuration value, null for none or an unknown value
+         */
+        static Mode parse(String mode) {
+            if (mode != null) {
+                for (Mode value : values()) {
+                    if (value.name().equalsIgnoreCase(mode.trim())) {
+                        return value;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    private final Mode mode;
+    private final Map<String, Integer> channels = new HashMap<>();
+    private final String[] names = new String[MAX_CHANNELS];
+    private final Mode[] modes = new Mode[MAX_CHANNELS];
+    private final double[] sums = new double[MAX_CHANNELS];
+    private final double[] minimums = new double[MAX_CHANNELS];
+    private final double[] maximums = new double[MAX_CHANNELS];
+    private final double[] lasts = new double[MAX_CHANNELS];
+    private final int[] counts = new int[MAX_CHANNELS];
+    // samples that did not lead to an update
+    private long absorbed;
+
+    RfLinkSampleAggregator(Mode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Adds a sample to the window of its channel.
+     *
+     * @param lastOnly
+     *            true if the values of the channel can't be combined and only the last sample is published
+     * @return false if the channel can't be aggregated (too many channels) and the sample has to be published
+     */
+    synchronized boolean add(String channel, double value, boolean lastOnly) {
+        Integer index = channels.get(channel);
+        if (index == null) {
+            if (channels.size() == MAX_CHANNELS) {
+                return false;
+            }
+            index = channels.size();
+            channels.put(channel, index);
+            names[index] = channel;
+            modes[index] = lastOnly ? Mode.LAST : mode;
+        }
+        int i = index;
+        if (counts[i] == 0) {
+            sums[i] = value;
+            minimums[i] = value;
+            maximums[i] = value;
+        } else {
+            sums[i] += value;
+            minimums[i] = Math.min(minimums[i], value);
+            maximums[i] = Math.max(maximums[i], value);
+        }
+        lasts[i] = value;
+        counts[i]++;
+        absorbed++;
+        return true;
+    }
+
+    /**
+     * Ends the window: passes the aggregated value of each channel that received samples to the publisher.
+     */
+    synchronized void flush(ObjDoubleConsumer<String> publisher) {
+        for (int i = 0; i < channels.size(); i++) {
+            if (counts[i] > 0) {
+                publisher.accept(names[i], aggregate(i));
+                counts[i] = 0;
+                absorbed--;
+            }
+        }
+    }
+
+    private double aggregate(int i) {
+        switch (modes[i]) {
+            case MEAN:
+                return sums[i] / counts[i];
+            case MIN:
+                return minimums[i];
+            case MAX:
+                return maximums[i];
+            default:
+                return lasts[i];
+        }
+    }
+
+    /**
+     * @return the number of samples that did not lead to an update
+     */
+    synchronized long getAbsorbed() {
+        return absorbed;
+    }
+}
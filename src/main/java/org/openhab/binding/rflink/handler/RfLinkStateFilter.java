@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) 2010-2023 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.rflink.handler;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openhab.core.types.State;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Last published state of each channel of a thing, to publish only the states that changed.
+ *
+ * A numeric state changes when it moves by more than the deadband of its channel (0 when not configured) from the last
+ * published value, any other state when it is not equal to the last published one. With a maximal quiet interval, an
+ * unchanged state is published anyway once it is over, so that the item is refreshed. The filter is enabled by a
+ * deadband or a maximal quiet interval.
+ *
+ * @author Cyril Cauchois - Initial contribution
+ */
+class RfLinkStateFilter {
+
+    private final Logger logger = LoggerFactory.getLogger(RfLinkStateFilter.class);
+
+    private static final String DEADBANDS_DELIMITER = ",";
+    private static final String DEADBAND_DELIMITER = "=";
+
+    private static class Published {
+        final State state;
+        final long time;
+
+        Published(State state, long time) {
+            this.state = state;
+            this.time = time;
+        }
+    }
+
+    private final Map<String, Double> deadbands = new HashMap<>();
+    private final long maxQuietNanos;
+    private final Map<String, Published> published = new ConcurrentHashMap<>();
+
+    /**
+     * @param deadbands
+     *            comma separated channel=deadband list, e.g. "temperature=0.1,humidity=1", may be null
+     * @param maxQuietInterval
+     *            time in seconds after which an unchanged state is published again, 0 to never publish it again
+     */
+    RfLinkStateFilter(String deadbands, int maxQuietInterval) {
+        this.maxQuietNanos = TimeUnit.SECONDS.toNanos(Math.max(maxQuietInterval, 0));
+        if (deadbands != null) {
+            for (String deadband : deadbands.split(DEADBANDS_DELIMITER)) {
+                String[] parts = deadband.split(DEADBAND_DELIMITER);
+                if (parts.length != 2) {
+                    if (!deadband.isBlank()) {
+                        logger.warn("Ignoring the deadband '{}', expected channel=value", deadband);
+                    }
+                    continue;
+                }
+                try {
+                    this.deadbands.put(parts[0].trim(), Math.abs(Double.parseDouble(parts[1].trim())));
+                } catch (NumberFormatException e) {
+                    logger.warn("Ignoring the deadband '{}', the value is not a number", deadband);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return false if all the states are published
+     */
+    boolean isEnabled() {
+        return maxQuietNanos > 0 || !deadbands.isEmpty();
+    }
+
+    /**
+     * Records the state of a channel if it has to be published.
+     *
+     * @param now
+     *            current time in nanoseconds
+     * @return true if the state has to be published
+     */
+    boolean accept(String channel, State state, long now) {
+        if (!isEnabled()) {
+            return true;
+        }
+        Published last = published.get(channel);
+        if (last != null && (maxQuietNanos == 0 || now - last.time < maxQuietNanos)
+                && !isChanged(channel, last.state, state)) {
+            return false;
+        }
+        published.put(channel, new Published(state, now));
+        return true;
+    }
+
+    /**
+     * Records the state of a channel published regardless of the filter (commands).
+     */
+    void record(String channel, State state, long now) {
+        if (isEnabled()) {
+            published.put(channel, new Published(state, now));
+        }
+    }
+
+    private boolean isChanged(String channel, State last, State state) {
+        if (last instanceof Number && state instanceof Number && last.getClass() == state.getClass()) {
+            double delta = Math.abs(((Number) state).doubleValue() - ((Number) last).doubleValue());
+            // a NaN delta is a change
+            return !(delta <= deadbands.getOrDefault(channel, 0d));
+        }
+        return !last.equals(state);
+    }
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright (c) 2010-2023 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.rflink.handler;
+
+import org.openhab.core.library.types.OnOffType;
+import org.openhab.core.library.types.StopMoveType;
+import org.openhab.core.types.Command;
+
+/**
+ * Transmit lanes of the bridge, from the most to the least urgent.
+ *
+ * @author Cyril Cauchois - Initial contribution
+ */
+public enum RfLinkTransmitPriority {
+    /** safety commands (STOP, OFF) */
+    URGENT,
+    /** user commands */
+    INTERACTIVE,
+    /** repetitions of already sent commands */
+    REPEAT,
+    /** keep alive PING and raw bridge commands */
+    HOUSEKEEPING;
+
+    /**
+     * @return the lane of a user command
+     */
+    public static RfLinkTransmitPriority forCommand(Command command) {
+        if (command == StopMoveType.STOP || command == OnOffType.OFF) {
+            return URGENT;
+        }
+        return INTERACTIVE;
+    }
+}
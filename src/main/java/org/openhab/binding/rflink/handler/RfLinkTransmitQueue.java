@@ -0,0 +1,527 @@
+/**
+ * Copyright (c) 2010-2023 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.rflink.handler;
+
+import java.io.IOException;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openhab.binding.rflink.messages.RfLinkMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Transmit queue of a bridge. Messages are queued without locking from any thread, and written by a single
+ * transmit thread per bridge, so the caller never waits for the pacing between frames.
+ *
+ * Messages are queued in one lane per {@link RfLinkTransmitPriority} and the lanes are drained strictly by
+ * priority. The urgent lane always goes first; among the other lanes, a message waiting for longer than the aging
+ * threshold is sent before the higher lanes.
+ *
+ * Commands queued with a coalescing key (device and channel) supersede the not yet sent transmissions of the previous
+ * replaceable command with the same key, so that only the latest value of a dragged slider goes on air. Commands that
+ * are not replaceable (on/off edges) are always sent, except when an urgent command for the same device follows them:
+ * the urgent lane would otherwise overtake them, and an ON sent after the OFF queued behind it would leave the device
+ * on.
+ *
+ * With an offline buffer, the queue is paused while the gateway is disconnected: commands are kept (up to the buffer
+ * size, and optionally collapsed to the latest one per device and channel) and sent once the connection is back,
+ * unless they waited for longer than their time to live. The message whose write detects the disconnection is put
+ * back at the head of the buffer, with a new time to live, and sent first.
+ *
+ * @author Cyril Cauchois - Initial contribution
+ */
+class RfLinkTransmitQueue implements Runnable {
+
+    /**
+     * Writes a message to the gateway, blocking for the pacing between frames.
+     */
+    interface Transmitter {
+        void transmit(RfLinkMessage message) throws IOException;
+    }
+
+    /**
+     * Called from the transmit thread when a message could not be written.
+     */
+    interface FailureListener {
+        void transmitFailed(RfLinkMessage message, IOException e);
+    }
+
+    static final int DEFAULT_AGING_THRESHOLD = 1000;
+
+    /**
+     * Transmissions (first one and repetitions) of one coalesced command.
+     */
+    private static class Command {
+        final String key;
+        final boolean replaceable;
+        final AtomicInteger pending = new AtomicInteger();
+        volatile boolean superseded;
+        // earlier command with the same key and transmissions still queued, guarded by latestCommands
+        Command previous;
+
+        Command(String key, boolean replaceable) {
+            this.key = key;
+            this.replaceable = replaceable;
+        }
+    }
+
+    private static class Entry {
+        final RfLinkMessage message;
+        final RfLinkTransmitPriority priority;
+        final Command command;
+        final long enqueuedNanos = System.nanoTime();
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        // held by the offline buffer, expiring after its time to live from bufferedNanos
+        volatile boolean buffered;
+        volatile long bufferedNanos;
+
+        Entry(RfLinkMessage message, RfLinkTransmitPriority priority, Command command, boolean buffered) {
+            this.message = message;
+            this.priority = priority;
+            this.command = command;
+            this.buffered = buffered;
+            this.bufferedNanos = enqueuedNanos;
+        }
+    }
+
+    /**
+     * Queue and statistics of one priority.
+     */
+    private static class Lane {
+        // multiple producers (command threads), single consumer (transmit thread)
+        final Deque<Entry> queue = new ConcurrentLinkedDeque<>();
+        final AtomicInteger depth = new AtomicInteger();
+
+        // written by the transmit thread only
+        volatile long sent;
+        volatile long aged;
+        volatile long totalWaitNanos;
+        volatile long maxWaitNanos;
+    }
+
+    private static final RfLinkTransmitPriority[] PRIORITIES = RfLinkTransmitPriority.values();
+
+    private final Logger logger = LoggerFactory.getLogger(RfLinkTransmitQueue.class);
+
+    private final Lane[] lanes = new Lane[PRIORITIES.length];
+
+    // latest queued command per coalescing key, each one linked to the earlier ones still queued
+    private final Map<String, Command> latestCommands = new ConcurrentHashMap<>();
+
+    // written by the transmit thread only
+    private volatile long coalesced;
+    private volatile long offlineDelivered;
+
+    private final AtomicInteger offlineBuffered = new AtomicInteger();
+    private final AtomicInteger offlineDropped = new AtomicInteger();
+    private final AtomicInteger offlineExpired = new AtomicInteger();
+
+    private volatile int offlineBufferSize = 0;
+    private volatile long offlineBufferTtlNanos = Long.MAX_VALUE;
+    private volatile boolean offlineBufferCollapse = false;
+    private volatile boolean paused;
+
+    private final String name;
+    private final Transmitter transmitter;
+    private final FailureListener failureListener;
+
+    private volatile long agingThresholdNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_AGING_THRESHOLD);
+    private volatile Thread thread;
+
+    RfLinkTransmitQueue(String name, Transmitter transmitter, FailureListener failureListener) {
+        this.name = name;
+        this.transmitter = transmitter;
+        this.failureListener = failureListener;
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane();
+        }
+    }
+
+    /**
+     * @param agingThreshold
+     *            waiting time in milliseconds after which a message is sent regardless of its priority
+     */
+    void setAgingThreshold(int agingThreshold) {
+        agingThresholdNanos = TimeUnit.MILLISECONDS.toNanos(agingThreshold > 0 ? agingThreshold : Long.MAX_VALUE / 2);
+    }
+
+    /**
+     * @param size
+     *            maximal number of queued messages while the gateway is disconnected, 0 to fail messages right away
+     * @param ttl
+     *            time to live in seconds of a message queued while the gateway is disconnected, 0 for no limit
+     * @param collapse
+     *            true to keep only the latest command per device and channel while the gateway is disconnected,
+     *            on/off edges included
+     */
+    void setOfflineBuffer(int size, int ttl, boolean collapse) {
+        offlineBufferSize = Math.max(size, 0);
+        offlineBufferTtlNanos = ttl > 0 ? TimeUnit.SECONDS.toNanos(ttl) : Long.MAX_VALUE;
+        offlineBufferCollapse = collapse;
+    }
+
+    /**
+     * Holds the messages in the offline buffer until {@link #resume()}, if the offline buffer is enabled.
+     */
+    void pause() {
+        if (offlineBufferSize > 0 && !paused) {
+            logger.debug("Transmit queue of {} paused", name);
+            paused = true;
+        }
+    }
+
+    /**
+     * Sends the messages held by {@link #pause()}.
+     */
+    void resume() {
+        if (paused) {
+            logger.debug("Transmit queue of {} resumed with {} messages", name, getDepth());
+            paused = false;
+            Thread current = thread;
+            if (current != null) {
+                LockSupport.unpark(current);
+            }
+        }
+    }
+
+    private int getDepth() {
+        int depth = 0;
+        for (Lane lane : lanes) {
+            depth += lane.depth.get();
+        }
+        return depth;
+    }
+
+    synchronized void start() {
+        if (thread == null) {
+            thread = new Thread(this, "OH-binding-rflink-tx-" + name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    synchronized void stop() {
+        Thread current = thread;
+        thread = null;
+        if (current != null) {
+            LockSupport.unpark(current);
+        }
+        for (Lane lane : lanes) {
+            Entry entry;
+            while ((entry = lane.queue.poll()) != null) {
+                lane.depth.decrementAndGet();
+                entry.future.cancel(false);
+            }
+        }
+        latestCommands.clear();
+    }
+
+    /**
+     * Queues a message for transmission.
+     *
+     * @return a future completed once the message has been written to the gateway
+     */
+    CompletableFuture<Void> enqueue(RfLinkMessage message, RfLinkTransmitPriority priority) {
+        return enqueue(message, priority, null);
+    }
+
+    /**
+     * Queues a command for transmission, the repetitions after the first transmission are queued in the
+     * {@link RfLinkTransmitPriority#REPEAT} lane.
+     *
+     * An urgent command supersedes all the queued commands of the same device, replaceable or not, since it would
+     * overtake them.
+     *
+     * @param coalesceKey
+     *            device and channel of the command, as "device/channel", null if the command never coalesces
+     * @param replaceable
+     *            true if a later command with the same key may drop the transmissions of this one not sent yet
+     * @return a future completed once all transmissions have been written to the gateway, or dropped because a newer
+     *         command superseded them
+     */
+    CompletableFuture<Void> enqueue(RfLinkMessage message, RfLinkTransmitPriority priority, int repeats,
+            String coalesceKey, boolean replaceable) {
+        Command command = null;
+        if (coalesceKey != null) {
+            command = new Command(coalesceKey, replaceable);
+            command.pending.set(repeats);
+            synchronized (latestCommands) {
+                Command previous = latestCommands.put(coalesceKey, command);
+                if (priority == RfLinkTransmitPriority.URGENT) {
+                    supersede(previous);
+                    String device = coalesceKey.substring(0, coalesceKey.lastIndexOf('/') + 1);
+                    for (Map.Entry<String, Command> latest : latestCommands.entrySet()) {
+                        if (!device.isEmpty() && latest.getKey().startsWith(device) && latest.getValue() != command) {
+                            supersede(latest.getValue());
+                        }
+                    }
+                } else if (previous != null) {
+                    if (previous.replaceable || (paused && offlineBufferCollapse)) {
+                        previous.superseded = true;
+                    }
+                    link(command, previous);
+                }
+            }
+        }
+        CompletableFuture<Void> sent = enqueue(message, priority, command);
+        for (int i = 1; i < repeats; i++) {
+            sent = CompletableFuture.allOf(sent, enqueue(message, RfLinkTransmitPriority.REPEAT, command));
+        }
+        return sent;
+    }
+
+    private CompletableFuture<Void> enqueue(RfLinkMessage message, RfLinkTransmitPriority priority,
+            Command command) {
+        boolean buffered = paused;
+        Entry entry = new Entry(message, priority, command, buffered);
+        Thread current = thread;
+        if (current == null) {
+            entry.future.completeExceptionally(new IOException("Transmit queue is stopped"));
+        } else if (buffered && getDepth() >= offlineBufferSize && !purgeExpired()) {
+            offlineDropped.incrementAndGet();
+            entry.future.completeExceptionally(new IOException("Offline buffer is full"));
+        } else {
+            if (buffered) {
+                offlineBuffered.incrementAndGet();
+            }
+            Lane lane = lanes[priority.ordinal()];
+            lane.depth.incrementAndGet();
+            lane.queue.offer(entry);
+            LockSupport.unpark(current);
+        }
+        return entry.future;
+    }
+
+    @Override
+    public void run() {
+        Thread self = Thread.currentThread();
+        logger.debug("Transmit thread of {} started", name);
+        while (thread == self) {
+            Entry entry = paused ? null : next();
+            if (entry == null) {
+                // an unpark issued between next() and park() is not lost: park returns immediately
+                LockSupport.park(this);
+                continue;
+            }
+            if (entry.future.isDone()) {
+                continue;
+            }
+            try {
+                logger.debug("Transmitting message '{}'", entry.message);
+                transmitter.transmit(entry.message);
+                if (entry.buffered) {
+                    offlineDelivered++;
+                }
+                entry.future.complete(null);
+            } catch (IOException e) {
+                if (offlineBufferSize > 0) {
+                    pause();
+                    requeue(entry, self);
+                } else {
+                    entry.future.completeExceptionally(e);
+                }
+                failureListener.transmitFailed(entry.message, e);
+            } catch (RuntimeException e) {
+                logger.error("Unexpected error while transmitting '{}'", entry.message, e);
+                entry.future.completeExceptionally(e);
+            }
+        }
+        logger.debug("Transmit thread of {} stopped", name);
+    }
+
+    /**
+     * Puts a message that could not be written back at the head of its lane, held by the offline buffer from now on.
+     * The buffer may exceed its size by this message.
+     */
+    private void requeue(Entry entry, Thread self) {
+        logger.debug("Message '{}' kept in the offline buffer", entry.message);
+        entry.bufferedNanos = System.nanoTime();
+        entry.buffered = true;
+        offlineBuffered.incrementAndGet();
+        Command command = entry.command;
+        if (command != null) {
+            synchronized (latestCommands) {
+                command.pending.incrementAndGet();
+                latestCommands.putIfAbsent(command.key, command);
+            }
+        }
+        Lane lane = lanes[entry.priority.ordinal()];
+        lane.depth.incrementAndGet();
+        lane.queue.offerFirst(entry);
+        // stopped meanwhile: the queue has already been emptied
+        if (thread != self && lane.queue.remove(entry)) {
+            lane.depth.decrementAndGet();
+            entry.future.cancel(false);
+        }
+    }
+
+    /**
+     * Picks the next message: the head of the urgent lane if any, otherwise the oldest one beyond the aging threshold
+     * if any, otherwise the head of the highest priority lane. Superseded and expired messages are dropped on the way.
+     */
+    private Entry next() {
+        while (true) {
+            long now = System.nanoTime();
+            Lane selected = null;
+            // the urgent lane is never overtaken by aged messages
+            if (lanes[0].queue.peek() == null) {
+                long oldestWait = agingThresholdNanos;
+                for (int i = 1; i < lanes.length; i++) {
+                    Entry head = lanes[i].queue.peek();
+                    if (head != null && now - head.enqueuedNanos > oldestWait) {
+                        oldestWait = now - head.enqueuedNanos;
+                        selected = lanes[i];
+                    }
+                }
+            }
+            boolean aged = selected != null;
+            if (!aged) {
+                for (Lane lane : lanes) {
+                    if (lane.queue.peek() != null) {
+                        selected = lane;
+                        break;
+                    }
+                }
+                if (selected == null) {
+                    return null;
+                }
+            }
+
+            Entry entry = selected.queue.poll();
+            selected.depth.decrementAndGet();
+            if (isSuperseded(entry)) {
+                logger.debug("Dropping superseded message '{}'", entry.message);
+                coalesced++;
+                entry.future.complete(null);
+                continue;
+            }
+            if (isExpired(entry, now)) {
+                expire(entry);
+                continue;
+            }
+            long wait = now - entry.enqueuedNanos;
+            selected.sent++;
+            if (aged) {
+                selected.aged++;
+            }
+            selected.totalWaitNanos += wait;
+            selected.maxWaitNanos = Math.max(selected.maxWaitNanos, wait);
+            return entry;
+        }
+    }
+
+    /**
+     * Only the messages queued while the gateway was disconnected expire.
+     */
+    private boolean isExpired(Entry entry, long now) {
+        return entry.buffered && now - entry.bufferedNanos > offlineBufferTtlNanos;
+    }
+
+    private void expire(Entry entry) {
+        logger.debug("Dropping expired message '{}'", entry.message);
+        offlineExpired.incrementAndGet();
+        entry.future.completeExceptionally(new IOException("Message expired before the gateway reconnected"));
+    }
+
+    /**
+     * Drops the expired messages of a full offline buffer, nothing polls the lanes while the queue is paused.
+     *
+     * @return true if some room was made
+     */
+    private boolean purgeExpired() {
+        long now = System.nanoTime();
+        boolean purged = false;
+        for (Lane lane : lanes) {
+            for (Entry entry : lane.queue) {
+                // the transmit thread may poll the entry concurrently once resumed
+                if (isExpired(entry, now) && lane.queue.remove(entry)) {
+                    lane.depth.decrementAndGet();
+                    isSuperseded(entry);
+                    expire(entry);
+                    purged = true;
+                }
+            }
+        }
+        return purged;
+    }
+
+    /**
+     * Supersedes a command and the earlier ones with the same key.
+     */
+    private static void supersede(Command command) {
+        Command current = command;
+        while (current != null) {
+            current.superseded = true;
+            Command previous = current.previous;
+            current.previous = null;
+            current = previous;
+        }
+    }
+
+    /**
+     * Links a command to the earlier commands with the same key that still have transmissions queued.
+     */
+    private static void link(Command command, Command previous) {
+        Command last = command;
+        for (Command current = previous; current != null; current = current.previous) {
+            if (!current.superseded && current.pending.get() > 0) {
+                last.previous = current;
+                last = current;
+            }
+        }
+        last.previous = null;
+    }
+
+    private boolean isSuperseded(Entry entry) {
+        Command command = entry.command;
+        if (command == null) {
+            return false;
+        }
+        if (command.pending.decrementAndGet() <= 0) {
+            latestCommands.remove(command.key, command);
+        }
+        return command.superseded;
+    }
+
+    /**
+     * Adds the depth, sent/aged counters and wait times of every lane, the number of coalesced transmissions and the
+     * offline buffer counters to the given statistics.
+     */
+    void collectStatistics(Map<String, String> statistics) {
+        statistics.put("txCoalesced", String.valueOf(coalesced));
+        if (offlineBufferSize > 0) {
+            statistics.put("offlineBuffered", String.valueOf(offlineBuffered.get()));
+            statistics.put("offlineDropped", String.valueOf(offlineDropped.get()));
+            statistics.put("offlineExpired", String.valueOf(offlineExpired.get()));
+            statistics.put("offlineDelivered", String.valueOf(offlineDelivered));
+        }
+        for (RfLinkTransmitPriority priority : PRIORITIES) {
+            Lane lane = lanes[priority.ordinal()];
+            String prefix = "txLane" + priority.name().charAt(0) + priority.name().substring(1).toLowerCase();
+            long sent = lane.sent;
+            statistics.put(prefix + "Depth", String.valueOf(lane.depth.get()));
+            statistics.put(prefix + "Sent", String.valueOf(sent));
+            statistics.put(prefix + "Aged", String.valueOf(lane.aged));
+            statistics.put(prefix + "AvgWaitMs",
+                    String.valueOf(sent > 0 ? TimeUnit.NANOSECONDS.toMillis(lane.totalWaitNanos / sent) : 0));
+            statistics.put(prefix + "MaxWaitMs", String.valueOf(TimeUnit.NANOSECONDS.toMillis(lane.maxWaitNanos)));
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/**
+ * Copyright (c) 2010-2023 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.rflink.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openhab.binding.rflink.internal.RfLinkStateStore.StoredState;
+import org.openhab.core.library.types.DateTimeType;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.library.types.HSBType;
+import org.openhab.core.library.types.OnOffType;
+import org.openhab.core.library.types.OpenClosedType;
+import org.openhab.core.library.types.PercentType;
+import org.openhab.core.library.types.StringType;
+import org.openhab.core.types.State;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Snapshot file of a {@link RfLinkStateStore}, so that the last known states of the devices survive a restart.
+ *
+ * The file is a header followed by records, one per device update: the device id then, for each key, its state type,
+ * update time and value. Periodic writes only append the devices updated since the previous write; once the file has
+ * doubled or reached its maximal size, it is compacted by writing the current devices, most recently updated first,
+ * to a new file replacing the old one. A record torn by a crash ends the loading and triggers a compaction.
+ *
+ * @author Cyril Cauchois - Initial contribution
+ */
+public class RfLinkStateSnapshot {
+
+    private final Logger logger = LoggerFactory.getLogger(RfLinkStateSnapshot.class);
+
+    private static final int MAGIC = 0x52464c53; // "RFLS"
+    private static final byte FORMAT_VERSION = 1;
+    private static final int RECORD_MARKER = 0x7e;
+
+    // below this size, a growing file is not worth compacting
+    private static final long MIN_COMPACTED_SIZE = 4096;
+
+    private static final byte TYPE_DECIMAL = 1;
+    private static final byte TYPE_PERCENT = 2;
+    private static final byte TYPE_HSB = 3;
+    private static final byte TYPE_ON_OFF = 4;
+    private static final byte TYPE_OPEN_CLOSED = 5;
+    private static final byte TYPE_STRING = 6;
+    private static final byte TYPE_DATE_TIME = 7;
+
+    private final Path file;
+    private final long maxSize;
+
+    private long fileSize;
+    private long compactedSize;
+    private boolean compactionNeeded = true;
+    // version of the store at the last write
+    private long writtenVersion = -1;
+    private long compactions;
+
+    /**
+     * @param maxSize
+     *            size in bytes beyond which the file is compacted, a compacted file holds at most half of it
+     */
+    public RfLinkStateSnapshot(Path file, long maxSize) {
+        this.file = file;
+        this.maxSize = Math.max(maxSize, 2 * MIN_COMPACTED_SIZE);
+    }
+
+    /**
+     * Restores the states of the file into the store.
+     *
+     * @return the number of records read
+     */
+    public synchronized int load(RfLinkStateStore store) {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        int records = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readByte() != FORMAT_VERSION) {
+                logger.warn("Ignoring state snapshot {}: unknown format", file);
+                return 0;
+            }
+            int marker;
+            while ((marker = in.read()) >= 0) {
+                if (marker != RECORD_MARKER) {
+                    throw new IOException("corrupted record " + records);
+                }
+                String deviceId = in.readUTF();
+                int count = in.readUnsignedShort();
+                Map<String, StoredState> states = new HashMap<>();
+                for (int i = 0; i < count; i++) {
+                    String key = in.readUTF();
+                    byte type = in.readByte();
+                    long updateTime = in.readLong();
+                    State state = decode(type, in.readUTF());
+                    if (state != null) {
+                        states.put(key, new StoredState(state, updateTime));
+                    }
+                }
+                store.restore(deviceId, states);
+                records++;
+            }
+            fileSize = Files.size(file);
+            compactedSize = fileSize;
+            compactionNeeded = false;
+        } catch (EOFException e) {
+            logger.debug("State snapshot {} ends with a torn record, {} records restored", file, records);
+        } catch (IOException e) {
+            logger.warn("Failed to read the state snapshot {} after {} records: {}", file, records, e.getMessage());
+        }
+        writtenVersion = store.getVersion();
+        return records;
+    }
+
+    /**
+     * Appends the devices updated since the previous write, or compacts the file. Called periodically, off the
+     * reception path.
+     */
+    public synchronized void write(RfLinkStateStore store) {
+        long version = store.getVersion();
+        if (version == writtenVersion && !compactionNeeded) {
+            return;
+        }
+        try {
+            boolean grown = fileSize >= 2 * Math.max(compactedSize, MIN_COMPACTED_SIZE);
+            if (compactionNeeded || grown || fileSize >= maxSize) {
+                compact(store);
+            } else {
+                append(store);
+            }
+            writtenVersion = version;
+        } catch (IOException e) {
+            logger.warn("Failed to write the state snapshot {}: {}", file, e.getMessage());
+            compactionNeeded = true;
+        }
+    }
+
+    private void append(RfLinkStateStore store) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)))) {
+            store.forEachUpdated(writtenVersion, (deviceId, states) -> writeRecord(out, deviceId, states));
+            out.flush();
+            fileSize += out.size();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void compact(RfLinkStateStore store) throws IOException {
+        List<Map.Entry<String, Map<String, StoredState>>> devices = new ArrayList<>();
+        store.forEachUpdated(-1, (deviceId, states) -> devices.add(Map.entry(deviceId, states)));
+        // the most recently updated devices are kept when the file would outgrow its size
+        devices.sort((first, second) -> Long.compare(lastUpdate(second.getValue()), lastUpdate(first.getValue())));
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        long size;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(FORMAT_VERSION);
+            for (Map.Entry<String, Map<String, StoredState>> device : devices) {
+                if (out.size() >= maxSize / 2) {
+                    break;
+                }
+                writeRecord(out, device.getKey(), device.getValue());
+            }
+            out.flush();
+            size = out.size();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        try {
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        fileSize = size;
+        compactedSize = size;
+        compactionNeeded = false;
+        compactions++;
+    }
+
+    private static long lastUpdate(Map<String, StoredState> states) {
+        long last = 0;
+        for (StoredState state : states.values()) {
+            last = Math.max(last, state.getUpdateTime());
+        }
+        return last;
+    }
+
+    private static void writeRecord(DataOutputStream out, String deviceId, Map<String, StoredState> states) {
+        List<Map.Entry<String, StoredState>> entries = new ArrayList<>();
+        for (Map.Entry<String, StoredState> entry : states.entrySet()) {
+            if (typeOf(entry.getValue().getState()) != 0) {
+                entries.add(entry);
+            }
+        }
+        if (entries.isEmpty()) {
+            return;
+        }
+        try {
+            out.writeByte(RECORD_MARKER);
+            out.writeUTF(deviceId);
+            out.writeShort(entries.size());
+            for (Map.Entry<String, StoredState> entry : entries) {
+                State state = entry.getValue().getState();
+                out.writeUTF(entry.getKey());
+                out.writeByte(typeOf(state));
+                out.writeLong(entry.getValue().getUpdateTime());
+                out.writeUTF(state.toFullString());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the type of a state, 0 if it is not persisted
+     */
+    private static byte typeOf(State state) {
+        // subclasses first
+        if (state instanceof HSBType) {
+            return TYPE_HSB;
+        } else if (state instanceof PercentType) {
+            return TYPE_PERCENT;
+        } else if (state instanceof DecimalType) {
+            return TYPE_DECIMAL;
+        } else if (state instanceof OnOffType) {
+            return TYPE_ON_OFF;
+        } else if (state instanceof OpenClosedType) {
+            return TYPE_OPEN_CLOSED;
+        } else if (state instanceof StringType) {
+            return TYPE_STRING;
+        } else if (state instanceof DateTimeType) {
+            return TYPE_DATE_TIME;
+        }
+        return 0;
+    }
+
+    /**
+     * @return the state of a type and value, null if it can't be decoded
+     */
+    private State decode(byte type, String value) {
+        try {
+            switch (type) {
+                case TYPE_DECIMAL:
+                    return new DecimalType(value);
+                case TYPE_PERCENT:
+                    return new PercentType(value);
+                case TYPE_HSB:
+                    return new HSBType(value);
+                case TYPE_ON_OFF:
+                    return OnOffType.valueOf(value);
+                case TYPE_OPEN_CLOSED:
+                    return OpenClosedType.valueOf(value);
+                case TYPE_STRING:
+                    return new StringType(value);
+                case TYPE_DATE_TIME:
+                    return new DateTimeType(value);
+                default:
+                    logger.debug("Unknown state type {} in state snapshot", type);
+            }
+        } catch (IllegalArgumentException e) {
+            logger.debug("Invalid state '{}' of type {} in state snapshot", value, type);
+        }
+        return null;
+    }
+
+    /**
+     * Adds the size of the file and the number of compactions to the given statistics.
+     */
+    public synchronized void collectStatistics(Map<String, String> statistics) {
+        statistics.put("snapshotBytes", String.valueOf(fileSize));
+        statistics.put("snapshotCompactions", String.valueOf(compactions));
+    }
+}
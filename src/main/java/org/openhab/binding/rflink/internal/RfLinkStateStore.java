@@ -0,0 +1,266 @@
+/**
+ * Copyright (c) 2010-2023 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.rflink.internal;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+import org.openhab.core.types.State;
+
+/**
+ * Last known states of the devices heard or commanded by a bridge, by device id then by key (usually a channel id).
+ *
+ * The states of a device are an immutable map replaced on each change, so reads never lock; storing unchanged states
+ * only refreshes their update time. The store is bounded:
+ * beyond the maximal number of devices, the least recently used ones are evicted, and devices neither read nor
+ * updated during the idle timeout are evicted as well.
+ *
+ * Each update of a device is numbered by a version of the store, so that the devices updated since a given version
+ * can be found (e.g. to persist them) without tracking them on updates.
+ *
+ * @author Cyril Cauchois - Initial contribution
+ */
+public class RfLinkStateStore {
+
+    // share of the devices evicted at once when the store is full, so that eviction scans stay rare
+    private static final int EVICTION_DIVISOR = 10;
+
+    /**
+     * A state and the time it was stored.
+     */
+    public static class StoredState {
+        private final State state;
+        // refreshed in place when the same state is stored again
+        private volatile long updateTime;
+
+        public StoredState(State state, long updateTime) {
+            this.state = state;
+            this.updateTime = updateTime;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        /**
+         * @return the time in milliseconds since the epoch at which the state was stored
+         */
+        public long getUpdateTime() {
+            return updateTime;
+        }
+    }
+
+    private static class DeviceStates {
+        final Map<String, StoredState> states;
+        volatile long version;
+        volatile long accessTime;
+
+        DeviceStates(Map<String, StoredState> states, long version, long accessTime) {
+            this.states = states;
+            this.version = version;
+            this.accessTime = accessTime;
+        }
+    }
+
+    private final Map<String, DeviceStates> devices = new ConcurrentHashMap<>();
+    private final int maxDevices;
+    private final long idleTimeout;
+    private volatile long nextIdleSweep;
+    private final LongAdder evicted = new LongAdder();
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * @param maxDevices
+     *            maximal number of devices
+     * @param idleTimeout
+     *            time in milliseconds after which a device neither read nor updated is evicted, 0 to keep it
+     */
+    public RfLinkStateStore(int maxDevices, long idleTimeout) {
+        this.maxDevices = Math.max(maxDevices, 1);
+        this.idleTimeout = Math.max(idleTimeout, 0);
+    }
+
+    /**
+     * @return the state stored for the key of a device, null if there is none
+     */
+    public StoredState get(String deviceId, String key) {
+        DeviceStates device = devices.get(deviceId);
+        if (device == null) {
+            return null;
+        }
+        device.accessTime = System.currentTimeMillis();
+        return device.states.get(key);
+    }
+
+    /**
+     * @return the states stored for a device, by key, an empty map if there is none
+     */
+    public Map<String, StoredState> getAll(String deviceId) {
+        DeviceStates device = devices.get(deviceId);
+        if (device == null) {
+            return Collections.emptyMap();
+        }
+        device.accessTime = System.currentTimeMillis();
+        return device.states;
+    }
+
+    /**
+     * Stores the state of a key of a device, a null state removes the key.
+     */
+    public void put(String deviceId, String key, State state) {
+        putAll(deviceId, Collections.singletonMap(key, state));
+    }
+
+    /**
+     * Stores states of a device, by key, null states remove their key.
+     */
+    public void putAll(String deviceId, Map<String, State> states) {
+        long now = System.currentTimeMillis();
+        if (refresh(deviceId, states, now)) {
+            return;
+        }
+        Map<String, StoredState> stored = new HashMap<>();
+        states.forEach((key, state) -> stored.put(key, state == null ? null : new StoredState(state, now)));
+        merge(deviceId, stored, now, false);
+    }
+
+    /**
+     * Stores states with their own update time, as restored from a previous run. Restoring doesn't count as an update
+     * of the device.
+     */
+    public void restore(String deviceId, Map<String, StoredState> states) {
+        merge(deviceId, states, System.currentTimeMillis(), true);
+    }
+
+    /**
+     * Refreshes the update time of the states of a device in place when none of them changed, the common case of a
+     * sensor repeating its values, without copying the states of the device.
+     *
+     * @return false if some state changed or is removed, and the states have to be merged
+     */
+    private boolean refresh(String deviceId, Map<String, State> states, long now) {
+        DeviceStates device = devices.get(deviceId);
+        if (device == null) {
+            return false;
+        }
+        for (Map.Entry<String, State> entry : states.entrySet()) {
+            StoredState stored = device.states.get(entry.getKey());
+            if (entry.getValue() == null || stored == null || !stored.state.equals(entry.getValue())) {
+                return false;
+            }
+        }
+        for (Map.Entry<String, State> entry : states.entrySet()) {
+            device.states.get(entry.getKey()).updateTime = now;
+        }
+        device.accessTime = now;
+        device.version = version.incrementAndGet();
+        sweepIdle(now);
+        return true;
+    }
+
+    private void merge(String deviceId, Map<String, StoredState> states, long now, boolean restored) {
+        devices.compute(deviceId, (id, device) -> {
+            Map<String, StoredState> merged = device == null ? new HashMap<>() : new HashMap<>(device.states);
+            states.forEach((key, state) -> {
+                if (state == null) {
+                    merged.remove(key);
+                } else {
+                    merged.put(key, state);
+                }
+            });
+            long deviceVersion = !restored ? version.incrementAndGet() : device == null ? 0 : device.version;
+            return merged.isEmpty() ? null
+                    : new DeviceStates(Collections.unmodifiableMap(merged), deviceVersion, now);
+        });
+        if (devices.size() > maxDevices) {
+            evictLeastRecentlyUsed();
+        }
+        sweepIdle(now);
+    }
+
+    private void sweepIdle(long now) {
+        if (idleTimeout > 0 && now >= nextIdleSweep) {
+            nextIdleSweep = now + idleTimeout / EVICTION_DIVISOR;
+            devices.entrySet().removeIf(entry -> {
+                boolean idle = now - entry.getValue().accessTime > idleTimeout;
+                if (idle) {
+                    evicted.increment();
+                }
+                return idle;
+            });
+        }
+    }
+
+    private synchronized void evictLeastRecentlyUsed() {
+        int excess = devices.size() - maxDevices;
+        if (excess <= 0) {
+            return;
+        }
+        // make room for some more devices before the next scan
+        int count = excess + maxDevices / EVICTION_DIVISOR;
+        devices.entrySet().stream()
+                .sorted((first, second) -> Long.compare(first.getValue().accessTime, second.getValue().accessTime))
+                .limit(count).map(Map.Entry::getKey).toList().forEach(deviceId -> {
+                    if (devices.remove(deviceId) != null) {
+                        evicted.increment();
+                    }
+                });
+    }
+
+    /**
+     * @return the device ids of the store
+     */
+    public Iterable<String> getDeviceIds() {
+        return devices.keySet();
+    }
+
+    /**
+     * @return the version of the last update of the store
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Passes the states of each device updated after the given version to the consumer, without counting it as a use
+     * of the device. Restored devices not updated since have the version 0, a negative version passes all the devices.
+     */
+    public void forEachUpdated(long sinceVersion, BiConsumer<String, Map<String, StoredState>> consumer) {
+        devices.forEach((deviceId, device) -> {
+            if (device.version > sinceVersion) {
+                consumer.accept(deviceId, device.states);
+            }
+        });
+    }
+
+    public int size() {
+        return devices.size();
+    }
+
+    public void clear() {
+        devices.clear();
+    }
+
+    /**
+     * Adds the number of devices and of evicted devices to the given statistics.
+     */
+    public void collectStatistics(Map<String, String> statistics) {
+        statistics.put("stateStoreDevices", String.valueOf(devices.size()));
+        statistics.put("stateStoreEvicted", String.valueOf(evicted.sum()));
+    }
+}
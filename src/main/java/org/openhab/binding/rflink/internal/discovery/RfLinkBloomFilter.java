@@ -0,0 +1,62 @@
+/**
+ * Copyright (c) 2010-2023 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.rflink.internal.discovery;
+
+/**
+ * Compact set of device id hashes, with about 1% false positives and no false negatives.
+ *
+ * @author Cyril Cauchois - Initial contribution
+ */
+class RfLinkBloomFilter {
+
+    private static final int HASH_FUNCTIONS = 7;
+    // for a 1% false positive rate
+    private static final int BITS_PER_ELEMENT = 10;
+
+    private final long[] bits;
+    private final int size;
+
+    RfLinkBloomFilter(int expectedElements) {
+        int words = Math.max((expectedElements * BITS_PER_ELEMENT + 63) / 64, 1);
+        this.bits = new long[words];
+        this.size = words * 64;
+    }
+
+    /**
+     * @param hash
+     *            64 bits hash of the element, as computed by {@link RfLinkDiscoveryIndex#hash(String)}
+     */
+    void add(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < HASH_FUNCTIONS; i++) {
+            int bit = Math.floorMod(h1 + i * h2, size);
+            bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    /**
+     * @return false if the element was never added, true if it probably was
+     */
+    boolean mightContain(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < HASH_FUNCTIONS; i++) {
+            int bit = Math.floorMod(h1 + i * h2, size);
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,92 +1,203 @@
-/**
- * Copyright (c) 2010-2023 Contributors to the openHAB project
- *
- * See the NOTICE file(s) distributed with this work for additional
- * information.
- *
- * This program and the accompanying materials are made available under the
- * terms of the Eclipse Public License 2.0 which is available at
- * http://www.eclipse.org/legal/epl-2.0
- *
- * SPDX-License-Identifier: EPL-2.0
- */
-package org.openhab.binding.rflink.internal.discovery;
-
-import java.util.Set;
-
-import org.openhab.binding.rflink.RfLinkBindingConstants;
-import org.openhab.binding.rflink.handler.RfLinkBridgeHandler;
-import org.openhab.binding.rflink.internal.DeviceMessageListener;
-import org.openhab.binding.rflink.messages.RfLinkBaseMessage;
-import org.openhab.binding.rflink.messages.RfLinkMessage;
-import org.openhab.binding.rflink.messages.RfLinkMessageFactory;
-import org.openhab.core.config.discovery.AbstractDiscoveryService;
-import org.openhab.core.config.discovery.DiscoveryResult;
-import org.openhab.core.config.discovery.DiscoveryResultBuilder;
-import org.openhab.core.thing.ThingTypeUID;
-import org.openhab.core.thing.ThingUID;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-/**
- * The {@link RfLinkDeviceDiscoveryService} class is used to discover RfLink
- * devices that send messages to RfLink bridge.
- *
- * @author Pauli Anttila - Initial contribution
- * @author Daan Sieben - Modified for RfLink
- * @author Marvyn Zalewski - Added the ability to ignore discoveries
- */
-public class RfLinkDeviceDiscoveryService extends AbstractDiscoveryService implements DeviceMessageListener {
-
-    private final Logger logger = LoggerFactory.getLogger(RfLinkDeviceDiscoveryService.class);
-
-    private RfLinkBridgeHandler bridgeHandler;
-
-    public RfLinkDeviceDiscoveryService(RfLinkBridgeHandler rflinkBridgeHandler) {
-        super(null, 1, false);
-        this.bridgeHandler = rflinkBridgeHandler;
-    }
-
-    public void activate() {
-        bridgeHandler.registerDeviceStatusListener(this);
-    }
-
-    @Override
-    public void deactivate() {
-        bridgeHandler.unregisterDeviceStatusListener(this);
-    }
-
-    @Override
-    public Set<ThingTypeUID> getSupportedThingTypes() {
-        return RfLinkBindingConstants.SUPPORTED_DEVICE_THING_TYPES_UIDS;
-    }
-
-    @Override
-    protected void startScan() {
-        // this can be ignored here as we discover devices from received messages
-    }
-
-    @Override
-    public void onDeviceMessageReceived(ThingUID bridge, RfLinkMessage message) {
-        logger.debug("Received: bridge: {} message: {}", bridge, message);
-
-        try {
-            RfLinkMessage msg = RfLinkMessageFactory.createMessage((RfLinkBaseMessage) message);
-            String id = message.getDeviceId();
-
-            ThingTypeUID uid = msg.getThingType();
-            ThingUID thingUID = new ThingUID(uid, bridge, id.replace(RfLinkBaseMessage.ID_DELIMITER, "_"));
-            if (!bridgeHandler.getConfiguration().disableDiscovery) {
-                logger.trace("Adding new RfLink {} with id '{}' to smarthome inbox", thingUID, id);
-                String deviceType = msg.getDeviceName();
-                DiscoveryResult discoveryResult = DiscoveryResultBuilder.create(thingUID).withLabel(deviceType)
-                        .withProperty(RfLinkBindingConstants.DEVICE_ID, msg.getDeviceId()).withBridge(bridge).build();
-                thingDiscovered(discoveryResult);
-            } else {
-                logger.trace("Ignoring RfLink {} with id '{}' - discovery disabled", thingUID, id);
-            }
-        } catch (Exception e) {
-            logger.debug("Error occured during device discovery", e);
-        }
-    }
-}
+/**
+ * Copyright (c) 2010-2023 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.rflink.internal.discovery;
+
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openhab.binding.rflink.RfLinkBindingConstants;
+import org.openhab.binding.rflink.config.RfLinkBridgeConfiguration;
+import org.openhab.binding.rflink.handler.RfLinkBridgeHandler;
+import org.openhab.binding.rflink.internal.DeviceMessageListener;
+import org.openhab.binding.rflink.messages.RfLinkBaseMessage;
+import org.openhab.binding.rflink.messages.RfLinkMessage;
+import org.openhab.core.config.discovery.AbstractDiscoveryService;
+import org.openhab.core.config.discovery.DiscoveryResult;
+import org.openhab.core.config.discovery.DiscoveryResultBuilder;
+import org.openhab.core.thing.ThingTypeUID;
+import org.openhab.core.thing.ThingUID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link RfLinkDeviceDiscoveryService} class is used to discover RfLink
+ * devices that send messages to RfLink bridge.
+ *
+ * The messages are already decoded by the bridge. A device reported less than {@link #REFRESH_INTERVAL} ago, or
+ * already configured, only costs a lookup in the {@link RfLinkDiscoveryIndex}.
+ *
+ * To keep the inbox usable next to busy neighbourhoods, devices can be filtered by protocol and by an ignore list (held
+ * in a {@link RfLinkBloomFilter}), have to be heard several times before being reported, and new inbox entries are
+ * rate limited.
+ *
+ * @author Pauli Anttila - Initial contribution
+ * @author Daan Sieben - Modified for RfLink
+ * @author Marvyn Zalewski - Added the ability to ignore discoveries
+ */
+public class RfLinkDeviceDiscoveryService extends AbstractDiscoveryService implements DeviceMessageListener {
+
+    private final Logger logger = LoggerFactory.getLogger(RfLinkDeviceDiscoveryService.class);
+
+    // devices are reported again after this time, in case the inbox entry was removed
+    private static final long REFRESH_INTERVAL = TimeUnit.MINUTES.toMillis(30);
+    private static final int INDEX_CAPACITY = 4096;
+
+    private RfLinkBridgeHandler bridgeHandler;
+
+    private final RfLinkDiscoveryIndex reported = new RfLinkDiscoveryIndex(INDEX_CAPACITY, REFRESH_INTERVAL);
+
+    private volatile Filter filter;
+
+    // token bucket of the new inbox entries
+    private double rateTokens;
+    private long rateRefillTime;
+
+    /**
+     * Discovery settings of the bridge configuration, parsed once.
+     */
+    private static class Filter {
+        final RfLinkBridgeConfiguration configuration;
+        final Set<String> allowedProtocols = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        final Set<String> deniedProtocols = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        final RfLinkBloomFilter ignoredDevices;
+
+        Filter(RfLinkBridgeConfiguration configuration) {
+            this.configuration = configuration;
+            split(configuration.discoveryAllowedProtocols, allowedProtocols);
+            split(configuration.discoveryDeniedProtocols, deniedProtocols);
+            Set<String> ignored = new TreeSet<>();
+            split(configuration.discoveryIgnoredDevices, ignored);
+            ignoredDevices = new RfLinkBloomFilter(ignored.size());
+            for (String id : ignored) {
+                ignoredDevices.add(RfLinkDiscoveryIndex.hash(id));
+            }
+        }
+
+        private static void split(String list, Set<String> elements) {
+            if (list != null) {
+                for (String element : list.split(",")) {
+                    if (!element.isBlank()) {
+                        elements.add(element.trim());
+                    }
+                }
+            }
+        }
+
+        boolean isProtocolAccepted(String protocol) {
+            return (allowedProtocols.isEmpty() || allowedProtocols.contains(protocol))
+                    && !deniedProtocols.contains(protocol);
+        }
+    }
+
+    public RfLinkDeviceDiscoveryService(RfLinkBridgeHandler rflinkBridgeHandler) {
+        super(null, 1, false);
+        this.bridgeHandler = rflinkBridgeHandler;
+    }
+
+    public void activate() {
+        bridgeHandler.registerDeviceStatusListener(this);
+    }
+
+    @Override
+    public void deactivate() {
+        bridgeHandler.unregisterDeviceStatusListener(this);
+    }
+
+    @Override
+    public Set<ThingTypeUID> getSupportedThingTypes() {
+        return RfLinkBindingConstants.SUPPORTED_DEVICE_THING_TYPES_UIDS;
+    }
+
+    @Override
+    protected void startScan() {
+        // this can be ignored here as we discover devices from received messages
+    }
+
+    @Override
+    public void onDeviceMessageReceived(ThingUID bridge, RfLinkMessage message) {
+        logger.debug("Received: bridge: {} message: {}", bridge, message);
+
+        try {
+            RfLinkBridgeConfiguration configuration = bridgeHandler.getConfiguration();
+            if (configuration.disableDiscovery) {
+                logger.trace("Ignoring RfLink device - discovery disabled");
+                return;
+            }
+            Filter currentFilter = getFilter(configuration);
+            if (!currentFilter.isProtocolAccepted(message.getDeviceName())) {
+                logger.trace("Ignoring RfLink device of protocol '{}' - filtered", message.getDeviceName());
+                return;
+            }
+            String id = message.getDeviceId();
+            long hash = RfLinkDiscoveryIndex.hash(id);
+            if (currentFilter.ignoredDevices.mightContain(hash)) {
+                logger.trace("Ignoring RfLink device with id '{}' - ignored", id);
+                return;
+            }
+            long now = System.currentTimeMillis();
+            if (!reported.sighted(hash, now, configuration.discoveryMinSightings)) {
+                return;
+            }
+            if (bridgeHandler.isDeviceConfigured(id)) {
+                logger.trace("Ignoring RfLink device with id '{}' - already configured", id);
+                reported.reported(hash, now);
+                return;
+            }
+            if (!acquireRateToken(configuration.discoveryRateLimit, now)) {
+                logger.trace("Delaying RfLink device with id '{}' - too many new devices", id);
+                return;
+            }
+            reported.reported(hash, now);
+
+            ThingTypeUID uid = message.getThingType();
+            ThingUID thingUID = new ThingUID(uid, bridge, id.replace(RfLinkBaseMessage.ID_DELIMITER, "_"));
+            logger.trace("Adding new RfLink {} with id '{}' to smarthome inbox", thingUID, id);
+            String deviceType = message.getDeviceName();
+            DiscoveryResult discoveryResult = DiscoveryResultBuilder.create(thingUID).withLabel(deviceType)
+                    .withProperty(RfLinkBindingConstants.DEVICE_ID, id).withBridge(bridge).build();
+            thingDiscovered(discoveryResult);
+        } catch (Exception e) {
+            logger.debug("Error occured during device discovery", e);
+        }
+    }
+
+    private Filter getFilter(RfLinkBridgeConfiguration configuration) {
+        Filter current = filter;
+        if (current == null || current.configuration != configuration) {
+            // the bridge configuration changed
+            current = new Filter(configuration);
+            filter = current;
+        }
+        return current;
+    }
+
+    /**
+     * @param rateLimit
+     *            maximal number of new inbox entries per minute, 0 for no limit
+     * @return true if a new inbox entry may be added now
+     */
+    private synchronized boolean acquireRateToken(int rateLimit, long now) {
+        if (rateLimit <= 0) {
+            return true;
+        }
+        rateTokens = Math.min(rateLimit,
+                rateTokens + (now - rateRefillTime) * rateLimit / (double) TimeUnit.MINUTES.toMillis(1));
+        rateRefillTime = now;
+        if (rateTokens < 1) {
+            return false;
+        }
+        rateTokens--;
+        return true;
+    }
+}
@@ -0,0 +1,171 @@
+/**
+ * Copyright (c) 2010-2023 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.rflink.internal.discovery;
+
+import java.util.Arrays;
+
+/**
+ * Index of the devices heard by the discovery, as 64 bits hashes of their device id in an open addressing table of
+ * primitives: looking a device up allocates nothing.
+ *
+ * A device becomes reportable once it has been heard a minimal number of times, and again once the refresh interval
+ * after its last report is over. The table is bounded: when it is full, the devices heard least recently (an eighth of
+ * the table) are evicted, so that the devices heard regularly keep their sightings and report times.
+ *
+ * @author Cyril Cauchois - Initial contribution
+ */
+class RfLinkDiscoveryIndex {
+
+    // 0 marks a free slot, so that hash value is remapped
+    private static final long FREE = 0;
+    private static final long NEVER = Long.MIN_VALUE;
+    // share of the devices evicted at once when the table is full, so that evictions stay rare
+    private static final int EVICTION_DIVISOR = 8;
+
+    private final long[] hashes;
+    private final long[] reportTimes;
+    private final long[] sightingTimes;
+    private final int[] sightings;
+    private final int maxSize;
+    private final long refreshInterval;
+    private int size;
+
+    /**
+     * @param capacity
+     *            maximal number of devices, rounded to a power of two
+     * @param refreshInterval
+     *            time in milliseconds after which a device is reported again
+     */
+    RfLinkDiscoveryIndex(int capacity, long refreshInterval) {
+        int slots = Integer.highestOneBit(Math.max(capacity, 8) - 1) << 2;
+        this.hashes = new long[slots];
+        this.reportTimes = new long[slots];
+        this.sightingTimes = new long[slots];
+        this.sightings = new int[slots];
+        this.maxSize = slots / 2;
+        this.refreshInterval = refreshInterval;
+    }
+
+    /**
+     * 64 bits FNV-1a hash of a device id.
+     */
+    static long hash(String deviceId) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < deviceId.length(); i++) {
+            hash ^= deviceId.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash == FREE ? 1 : hash;
+    }
+
+    /**
+     * Counts a sighting of a device.
+     *
+     * @return true if the device has to be reported: heard at least minSightings times, and never reported or
+     *         reported more than the refresh interval ago
+     */
+    synchronized boolean sighted(long hash, long now, int minSightings) {
+        int slot = find(hash);
+        if (hashes[slot] == FREE) {
+            if (size >= maxSize) {
+                evictLeastRecentlySighted();
+                slot = find(hash);
+            }
+            hashes[slot] = hash;
+            reportTimes[slot] = NEVER;
+            sightings[slot] = 0;
+            size++;
+        }
+        sightingTimes[slot] = now;
+        if (sightings[slot] < minSightings) {
+            sightings[slot]++;
+        }
+        return sightings[slot] >= minSightings
+                && (reportTimes[slot] == NEVER || now - reportTimes[slot] >= refreshInterval);
+    }
+
+    /**
+     * Records that a device was reported (or doesn't need to be) at the given time.
+     */
+    synchronized void reported(long hash, long now) {
+        int slot = find(hash);
+        if (hashes[slot] == hash) {
+            reportTimes[slot] = now;
+        }
+    }
+
+    /**
+     * @return the slot of the hash, or the free slot where it would be added
+     */
+    private int find(long hash) {
+        int mask = hashes.length - 1;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (hashes[slot] != FREE && hashes[slot] != hash) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Evicts the devices heard least recently, then adds the others again to the table, since removing a hash from a
+     * linear probing table would break the probe sequences of the following ones.
+     */
+    private void evictLeastRecentlySighted() {
+        long[] times = new long[size];
+        int count = 0;
+        for (int i = 0; i < hashes.length; i++) {
+            if (hashes[i] != FREE) {
+                times[count++] = sightingTimes[i];
+            }
+        }
+        Arrays.sort(times, 0, count);
+        int evicted = Math.max(count / EVICTION_DIVISOR, 1);
+        long threshold = times[evicted - 1];
+        // devices heard at the threshold time are only evicted up to the count
+        int first = evicted - 1;
+        while (first > 0 && times[first - 1] == threshold) {
+            first--;
+        }
+        int evictedAtThreshold = evicted - first;
+
+        long[] oldHashes = hashes.clone();
+        long[] oldReportTimes = reportTimes.clone();
+        long[] oldSightingTimes = sightingTimes.clone();
+        int[] oldSightings = sightings.clone();
+        clear();
+        for (int i = 0; i < oldHashes.length; i++) {
+            if (oldHashes[i] == FREE || oldSightingTimes[i] < threshold) {
+                continue;
+            }
+            if (oldSightingTimes[i] == threshold && evictedAtThreshold > 0) {
+                evictedAtThreshold--;
+                continue;
+            }
+            int slot = find(oldHashes[i]);
+            hashes[slot] = oldHashes[i];
+            reportTimes[slot] = oldReportTimes[i];
+            sightingTimes[slot] = oldSightingTimes[i];
+            sightings[slot] = oldSightings[i];
+            size++;
+        }
+    }
+
+    synchronized void clear() {
+        Arrays.fill(hashes, FREE);
+        size = 0;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+}
@@ -14,7 +14,6 @@ package org.openhab.binding.rflink.messages;
 
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
 
 import org.eclipse.jdt.annotation.NonNull;
@@ -44,13 +43,10 @@ public abstract class RfLinkBaseMessage implements RfLinkMessage {
     public final static String VALUE_DELIMITER = "=";
     public final static String ID_DELIMITER = "-";
 
-    private final static String NODE_NUMBER_FROM_GATEWAY = "20";
     private final static String NODE_NUMBER_TO_GATEWAY = "10";
 
     private static final String DEVICE_MASK = "00000000";
 
-    private final static int MINIMAL_SIZE_MESSAGE = 5;
-
     public String rawMessage;
     private byte seqNbr = 0;
     private String deviceName;
@@ -58,7 +54,7 @@ public abstract class RfLinkBaseMessage implements RfLinkMessage {
     protected Boolean isCommandReversed;
 
     @NonNull
-    Map<@NonNull String, @NonNull String> values = new HashMap<>();
+    RfLinkFrameFields values = new RfLinkFrameFields();
 
     public RfLinkBaseMessage() {
     }
@@ -74,30 +70,34 @@ public abstract class RfLinkBaseMessage implements RfLinkMessage {
 
     @Override
     public void encodeMessage(String data) {
-        rawMessage = data;
+        values.parse(data);
+        encodeMessage(values);
+    }
+
+    /**
+     * Decodes a frame already parsed, e.g. by the {@link RfLinkMessageFactory}, without scanning it again.
+     */
+    public void encodeMessage(RfLinkFrameFields fields) {
+        rawMessage = fields.getFrame();
+        values = fields;
 
-        final String[] elements = rawMessage.split(FIELDS_DELIMITER);
-        final int size = elements.length;
         // Every message should have at least 5 parts
         // Example : 20;31;Mebus;ID=c201;TEMP=00cf;
         // Example : 20;02;RTS;ID=82e8ac;SWITCH=01;CMD=DOWN;
         // Example : 20;07;Debug;RTS P1;a729000068622e;
-        if (size >= MINIMAL_SIZE_MESSAGE) {
-            // first element should be "20"
-            if (NODE_NUMBER_FROM_GATEWAY.equals(elements[0])) {
-                seqNbr = (byte) Integer.parseInt(elements[1], 16);
-                deviceName = elements[2].replaceAll("[^A-Za-z0-9_-]", "");
-                // build the key>value map
-                for (int i = 3; i < size; i++) {
-                    String[] keyValue = elements[i].split(VALUE_DELIMITER, 2);
-                    if (keyValue.length > 1) {
-                        // Raw values are stored, and will be decoded by sub implementations
-                        values.put(keyValue[0], keyValue[1]);
-                    }
-                }
-                deviceId = values.get("ID");
-            }
+        // Raw values are kept in the frame, and will be decoded by sub implementations
+        if (fields.isValid()) {
+            seqNbr = (byte) fields.getSequence();
+            deviceName = fields.getProtocol();
+            deviceId = fields.get("ID");
         }
+        decodeValues();
+    }
+
+    /**
+     * Decodes the raw values of the frame, to override in subclasses.
+     */
+    protected void decodeValues() {
     }
 
     @Override
@@ -130,7 +130,7 @@ public abstract class RfLinkBaseMessage implements RfLinkMessage {
     }
 
     public Map<String, String> getValues() {
-        return values;
+        return values.toMap();
     }
 
     @Override
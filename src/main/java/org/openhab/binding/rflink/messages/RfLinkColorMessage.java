@@ -22,6 +22,7 @@ import org.openhab.binding.rflink.RfLinkBindingConstants;
 import org.openhab.binding.rflink.config.RfLinkDeviceConfiguration;
 import org.openhab.binding.rflink.exceptions.RfLinkException;
 import org.openhab.binding.rflink.exceptions.RfLinkNotImpException;
+import org.openhab.binding.rflink.internal.RfLinkStateStore;
 import org.openhab.core.library.types.DecimalType;
 import org.openhab.core.library.types.HSBType;
 import org.openhab.core.library.types.IncreaseDecreaseType;
@@ -51,11 +52,17 @@ public class RfLinkColorMessage extends RfLinkBaseMessage {
     // angle between OpenHab Hue and RFLink/MiLight Hue
     private static final int COLOR_OFFSET = 45;
 
+    // key of the last color of the device in the state store, brightness included even when the light is off
+    private static final String STATE_KEY_COLOR = "lastColor";
+
     private Command command = null;
     private HSBType stateColor = null;
     private OnOffType stateOnOff = null;
 
-    private static HashMap<String, HSBType> currentState = new HashMap<>();
+    // color received in the frame, before the command is applied
+    private HSBType receivedColor = null;
+
+    private RfLinkStateStore stateStore = null;
 
     public RfLinkColorMessage() {
     }
@@ -64,6 +71,10 @@ public class RfLinkColorMessage extends RfLinkBaseMessage {
         encodeMessage(data);
     }
 
+    public RfLinkColorMessage(RfLinkFrameFields fields) {
+        encodeMessage(fields);
+    }
+
     @Override
     public ThingTypeUID getThingType() {
         return RfLinkBindingConstants.THING_TYPE_COLOR;
@@ -80,9 +91,8 @@ public class RfLinkColorMessage extends RfLinkBaseMessage {
     }
 
     @Override
-    public void encodeMessage(String data) {
-        logger.debug("Color Encode data: [{}]", data);
-        super.encodeMessage(data);
+    protected void decodeValues() {
+        logger.debug("Color Encode data: [{}]", rawMessage);
 
         if (values.containsKey(KEY_SWITCH)) {
             this.deviceId += ID_DELIMITER + values.get(KEY_SWITCH);
@@ -95,7 +105,7 @@ public class RfLinkColorMessage extends RfLinkBaseMessage {
             stateColor = new HSBType(new DecimalType(((color * 360 / 255) + 360 - COLOR_OFFSET) % 360),
                     new PercentType(100), new PercentType(brightness * 100 / 255));
         }
-        currentState.put(this.deviceId, stateColor);
+        receivedColor = stateColor;
 
         if (values.containsKey(KEY_CMD)) {
             switch (values.get(KEY_CMD)) {
@@ -122,6 +132,24 @@ public class RfLinkColorMessage extends RfLinkBaseMessage {
         }
     }
 
+    @Override
+    public void storeState(RfLinkStateStore stateStore) {
+        stateStore.put(getDeviceId(), STATE_KEY_COLOR, receivedColor);
+    }
+
+    @Override
+    public void setStateStore(RfLinkStateStore stateStore) {
+        this.stateStore = stateStore;
+    }
+
+    private HSBType getStoredColor() {
+        if (stateStore == null) {
+            return null;
+        }
+        RfLinkStateStore.StoredState stored = stateStore.get(getDeviceId(), STATE_KEY_COLOR);
+        return stored == null ? null : (HSBType) stored.getState();
+    }
+
     @Override
     public Collection<String> keys() {
         return KEYS;
@@ -148,12 +176,12 @@ public class RfLinkColorMessage extends RfLinkBaseMessage {
             throws RfLinkNotImpException, RfLinkException {
         super.initializeFromChannel(config, channelUID, triggeredCommand);
 
-        logger.debug("Color initializeFromChannel: deviceid={}, state={}, class={}, command={}", this.deviceId,
-                currentState.get(this.deviceId), triggeredCommand.getClass().getSimpleName(), triggeredCommand);
-
         command = triggeredCommand;
 
-        stateColor = currentState.get(this.deviceId);
+        stateColor = getStoredColor();
+        logger.debug("Color initializeFromChannel: deviceid={}, state={}, class={}, command={}", this.deviceId,
+                stateColor, triggeredCommand.getClass().getSimpleName(), triggeredCommand);
+
         if (command instanceof HSBType) {
             // HSBType is subclass of PercentType, so must handle before PercentType
             logger.debug("Color initializeFromChannel: HSB command={}", command);
@@ -187,7 +215,9 @@ public class RfLinkColorMessage extends RfLinkBaseMessage {
         } else {
             logger.debug("Color initializeFromChannel: Other command={}", command);
         }
-        currentState.put(this.deviceId, stateColor);
+        if (stateStore != null) {
+            stateStore.put(getDeviceId(), STATE_KEY_COLOR, stateColor);
+        }
         logger.debug("Color initializeFromChannel: state={}", stateColor);
     }
 
@@ -52,6 +52,10 @@ public class RfLinkEnergyMessage extends RfLinkBaseMessage {
         encodeMessage(data);
     }
 
+    public RfLinkEnergyMessage(RfLinkFrameFields fields) {
+        encodeMessage(fields);
+    }
+
     @Override
     public ThingTypeUID getThingType() {
         return RfLinkBindingConstants.THING_TYPE_ENERGY;
@@ -71,10 +75,7 @@ public class RfLinkEnergyMessage extends RfLinkBaseMessage {
     }
 
     @Override
-    public void encodeMessage(String data) {
-
-        super.encodeMessage(data);
-
+    protected void decodeValues() {
         // all usage is reported in Watts based on 230V
         if (values.containsKey(KEY_INSTANT_POWER)) {
             instantPower = RfLinkDataParser.parseHexaToUnsignedInt(values.get(KEY_INSTANT_POWER));
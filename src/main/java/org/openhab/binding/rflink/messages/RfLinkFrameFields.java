@@ -0,0 +1,281 @@
+/**
+ * Copyright (c) 2010-2023 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.rflink.messages;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Fields of a frame received from the gateway, e.g. "20;31;Mebus;ID=c201;TEMP=00cf;".
+ *
+ * The frame is scanned once and only the offsets of the KEY=VALUE fields are recorded, in an int array reused when the
+ * instance parses another frame. Values are extracted from the frame on demand, so looking up a key allocates nothing
+ * and a frame costs no split arrays nor map entries.
+ *
+ * @author Cyril Cauchois - Initial contribution
+ */
+public class RfLinkFrameFields {
+
+    private static final char FIELDS_DELIMITER = ';';
+    private static final char VALUE_DELIMITER = '=';
+    private static final String NODE_NUMBER_FROM_GATEWAY = "20";
+
+    // Every message should have at least 5 parts
+    private static final int MINIMAL_SIZE_MESSAGE = 5;
+
+    // key start, value delimiter, value end of each field
+    private static final int SLOT = 3;
+
+    private String frame = "";
+    private int[] offsets = new int[8 * SLOT];
+    private int size;
+    private int sequence;
+    private String protocol;
+
+    /**
+     * Scans a frame, forgetting the previous one.
+     *
+     * @return true if the frame comes from the gateway and has the minimal number of parts, false otherwise (no field
+     *         is then available)
+     */
+    public boolean parse(String data) {
+        frame = data;
+        size = 0;
+        sequence = 0;
+        protocol = null;
+
+        // trailing delimiters don't make parts
+        int end = data.length();
+        while (end > 0 && data.charAt(end - 1) == FIELDS_DELIMITER) {
+            end--;
+        }
+
+        int part = 0;
+        int partStart = 0;
+        int valueDelimiter = -1;
+        for (int i = 0; i <= end; i++) {
+            char c = i < end ? data.charAt(i) : FIELDS_DELIMITER;
+            if (c == VALUE_DELIMITER && valueDelimiter < 0) {
+                valueDelimiter = i;
+            } else if (c == FIELDS_DELIMITER) {
+                if (part == 0) {
+                    if (!data.startsWith(NODE_NUMBER_FROM_GATEWAY, partStart)
+                            || i - partStart != NODE_NUMBER_FROM_GATEWAY.length()) {
+                        return reset();
+                    }
+                } else if (part == 1) {
+                    sequence = parseHexa(data, partStart, i);
+                    if (sequence < 0) {
+                        return reset();
+                    }
+                } else if (part == 2) {
+                    protocol = sanitize(data, partStart, i);
+                } else if (valueDelimiter >= 0) {
+                    addField(partStart, valueDelimiter, i);
+                }
+                part++;
+                partStart = i + 1;
+                valueDelimiter = -1;
+            }
+        }
+        if (part < MINIMAL_SIZE_MESSAGE) {
+            return reset();
+        }
+        return true;
+    }
+
+    private boolean reset() {
+        size = 0;
+        sequence = 0;
+        protocol = null;
+        return false;
+    }
+
+    private void addField(int keyStart, int valueDelimiter, int valueEnd) {
+        int index = size * SLOT;
+        if (index + SLOT > offsets.length) {
+            int[] grown = new int[offsets.length * 2];
+            System.arraycopy(offsets, 0, grown, 0, offsets.length);
+            offsets = grown;
+        }
+        offsets[index] = keyStart;
+        offsets[index + 1] = valueDelimiter;
+        offsets[index + 2] = valueEnd;
+        size++;
+    }
+
+    private static int parseHexa(String data, int start, int end) {
+        if (start == end) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = Character.digit(data.charAt(i), RfLinkDataParser.BASE_HEXA);
+            if (digit < 0 || value > 0xFFFFFF) {
+                return -1;
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    /**
+     * @return the protocol name restricted to letters, digits, '_' and '-'
+     */
+    private static String sanitize(String data, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!isNameChar(data.charAt(i))) {
+                StringBuilder name = new StringBuilder(end - start);
+                for (int j = start; j < end; j++) {
+                    char c = data.charAt(j);
+                    if (isNameChar(c)) {
+                        name.append(c);
+                    }
+                }
+                return name.toString();
+            }
+        }
+        return data.substring(start, end);
+    }
+
+    private static boolean isNameChar(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_' || c == '-';
+    }
+
+    /**
+     * @return the last parsed frame
+     */
+    public String getFrame() {
+        return frame;
+    }
+
+    /**
+     * @return true if the last parsed frame comes from the gateway and has the minimal number of parts
+     */
+    public boolean isValid() {
+        return protocol != null;
+    }
+
+    /**
+     * @return the sequence number of the frame
+     */
+    public int getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return the sanitized protocol name, null if the frame was not parsed
+     */
+    public String getProtocol() {
+        return protocol;
+    }
+
+    /**
+     * @return the number of KEY=VALUE fields
+     */
+    public int size() {
+        return size;
+    }
+
+    public String getKey(int index) {
+        int slot = index * SLOT;
+        return frame.substring(offsets[slot], offsets[slot + 1]);
+    }
+
+    public String getValue(int index) {
+        int slot = index * SLOT;
+        return frame.substring(offsets[slot + 1] + 1, offsets[slot + 2]);
+    }
+
+    /**
+     * @return the index of the last field with the given key, -1 if there is none
+     */
+    public int indexOf(String key) {
+        int length = key.length();
+        for (int index = size - 1; index >= 0; index--) {
+            int slot = index * SLOT;
+            if (offsets[slot + 1] - offsets[slot] == length && frame.startsWith(key, offsets[slot])) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    public boolean containsKey(String key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * @return the value of the given key, null if there is none
+     */
+    public String get(String key) {
+        int index = indexOf(key);
+        return index < 0 ? null : getValue(index);
+    }
+
+    /**
+     * @return a hash of the keys of the frame, in their order, to detect a change of the fields sent by a device
+     */
+    public int keysHash() {
+        int hash = size;
+        for (int index = 0; index < size; index++) {
+            int slot = index * SLOT;
+            hash = 31 * hash + regionHash(offsets[slot], offsets[slot + 1]);
+        }
+        return hash;
+    }
+
+    /**
+     * @return the hash code of the value of the given key (same as its String hash code), 0 if there is none
+     */
+    public int valueHash(String key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return 0;
+        }
+        int slot = index * SLOT;
+        return regionHash(offsets[slot + 1] + 1, offsets[slot + 2]);
+    }
+
+    /**
+     * @return true if the given key has the given value, without extracting the value
+     */
+    public boolean valueEquals(String key, String value) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return false;
+        }
+        int slot = index * SLOT;
+        int start = offsets[slot + 1] + 1;
+        return offsets[slot + 2] - start == value.length() && frame.startsWith(value, start);
+    }
+
+    private int regionHash(int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + frame.charAt(i);
+        }
+        return hash;
+    }
+
+    /**
+     * @return a copy of the fields, in the order of the frame
+     */
+    public Map<String, String> toMap() {
+        Map<String, String> map = new LinkedHashMap<>();
+        for (int index = 0; index < size; index++) {
+            map.put(getKey(index), getValue(index));
+        }
+        return map;
+    }
+}
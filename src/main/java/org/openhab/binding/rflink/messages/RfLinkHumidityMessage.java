@@ -44,15 +44,17 @@ public class RfLinkHumidityMessage extends RfLinkBaseMessage {
         encodeMessage(data);
     }
 
+    public RfLinkHumidityMessage(RfLinkFrameFields fields) {
+        encodeMessage(fields);
+    }
+
     @Override
     public ThingTypeUID getThingType() {
         return RfLinkBindingConstants.THING_TYPE_HUMIDITY;
     }
 
     @Override
-    public void encodeMessage(String data) {
-        super.encodeMessage(data);
-
+    protected void decodeValues() {
         if (values.containsKey(KEY_HUMIDITY)) {
             String val = values.get(KEY_HUMIDITY);
             if (val != null) {
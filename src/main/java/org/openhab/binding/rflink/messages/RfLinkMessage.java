@@ -18,6 +18,7 @@ import java.util.Map;
 import org.openhab.binding.rflink.config.RfLinkDeviceConfiguration;
 import org.openhab.binding.rflink.exceptions.RfLinkException;
 import org.openhab.binding.rflink.exceptions.RfLinkNotImpException;
+import org.openhab.binding.rflink.internal.RfLinkStateStore;
 import org.openhab.core.thing.ChannelUID;
 import org.openhab.core.thing.ThingTypeUID;
 import org.openhab.core.types.Command;
@@ -88,4 +89,16 @@ public interface RfLinkMessage {
      */
     void initializeFromChannel(RfLinkDeviceConfiguration config, ChannelUID channelUID, Command command)
             throws RfLinkNotImpException, RfLinkException;
+
+    /**
+     * Records in the store of the bridge what the next commands of the device need from this received message.
+     */
+    default void storeState(RfLinkStateStore stateStore) {
+    }
+
+    /**
+     * Gives the store of the bridge to a message to be transmitted, before it is initialized.
+     */
+    default void setStateStore(RfLinkStateStore stateStore) {
+    }
 }
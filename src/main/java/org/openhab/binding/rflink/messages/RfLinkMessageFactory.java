@@ -12,9 +12,12 @@
  */
 package org.openhab.binding.rflink.messages;
 
-import java.lang.reflect.Constructor;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import org.openhab.binding.rflink.exceptions.RfLinkException;
 import org.openhab.binding.rflink.exceptions.RfLinkNotImpException;
@@ -25,6 +28,13 @@ import org.slf4j.LoggerFactory;
 /**
  * RFLink Message factory
  *
+ * Received frames are parsed once, then handed to the decoder of the matching message class, found in dispatch
+ * tables built once: by protocol name first, then by the first known key of the frame.
+ *
+ * As most frames come from the same few devices, the decoder chosen for a device (protocol and ID) is remembered in a
+ * bounded cache, together with a hash of its keys, and the tables are only searched again when the device sends
+ * other keys.
+ *
  * @author Cyril Cauchois - Initial contribution
  * @author Arjan Mels - Order of added keys is retained and search form first to last (to allow overlapping keywords to
  *         be handled properly)
@@ -33,82 +43,145 @@ public class RfLinkMessageFactory {
 
     private static Logger logger = LoggerFactory.getLogger(RfLinkMessageFactory.class);
 
-    private static LinkedHashMap<String, Class> KEY_TO_CLASS = new LinkedHashMap<>();
-    private static HashMap<ThingTypeUID, Class> THINGTYPE_TO_CLASS = new HashMap<>();
+    private static final String KEY_ID = "ID";
+
+    private static Map<String, Function<RfLinkFrameFields, RfLinkMessage>> KEY_TO_DECODER = new LinkedHashMap<>();
+    private static Map<String, Function<RfLinkFrameFields, RfLinkMessage>> PROTOCOL_TO_DECODER = new HashMap<>();
+    private static Map<ThingTypeUID, Supplier<RfLinkMessage>> THINGTYPE_TO_SUPPLIER = new HashMap<>();
+
+    // direct mapped: a device evicts the previous one using the same slot
+    private static final int DECODER_CACHE_SIZE = 1024;
+    private static final DecoderCacheEntry[] DECODER_CACHE = new DecoderCacheEntry[DECODER_CACHE_SIZE];
+    private static final LongAdder DECODER_CACHE_HITS = new LongAdder();
+    private static final LongAdder DECODER_CACHE_MISSES = new LongAdder();
+
+    /**
+     * Decoder chosen for a device. Immutable, so it can be shared between reception threads without locking.
+     */
+    private static class DecoderCacheEntry {
+        final String protocol;
+        final String id;
+        final int keysHash;
+        final Function<RfLinkFrameFields, RfLinkMessage> decoder;
+
+        DecoderCacheEntry(String protocol, String id, int keysHash,
+                Function<RfLinkFrameFields, RfLinkMessage> decoder) {
+            this.protocol = protocol;
+            this.id = id;
+            this.keysHash = keysHash;
+            this.decoder = decoder;
+        }
+    }
 
     /**
      * Mapping of the various message classes.
      * Note that the order is important: first matching class will be used
      */
     static {
-        addMappingOfClass(RfLinkEnergyMessage.class);
-        addMappingOfClass(RfLinkWindMessage.class);
-        addMappingOfClass(RfLinkRainMessage.class);
-        addMappingOfClass(RfLinkColorMessage.class);
-        addMappingOfClass(RfLinkTemperatureMessage.class);
-        addMappingOfClass(RfLinkRtsMessage.class);
-        addMappingOfClass(RfLinkHumidityMessage.class);
-        addMappingOfClass(RfLinkOregonTempHygroMessage.class);
-        addMappingOfClass(RfLinkSwitchMessage.class); // Switch class last as it is most generic
+        addMapping(RfLinkEnergyMessage::new, RfLinkEnergyMessage::new);
+        addMapping(RfLinkWindMessage::new, RfLinkWindMessage::new);
+        addMapping(RfLinkRainMessage::new, RfLinkRainMessage::new);
+        addMapping(RfLinkColorMessage::new, RfLinkColorMessage::new);
+        addMapping(RfLinkTemperatureMessage::new, RfLinkTemperatureMessage::new);
+        addMapping(RfLinkRtsMessage::new, RfLinkRtsMessage::new);
+        addMapping(RfLinkHumidityMessage::new, RfLinkHumidityMessage::new);
+        addMapping(RfLinkOregonTempHygroMessage::new, RfLinkOregonTempHygroMessage::new);
+        addMapping(RfLinkSwitchMessage::new, RfLinkSwitchMessage::new); // Switch class last as it is most generic
+
+        // protocols decoded by a dedicated class whatever their keys
+        PROTOCOL_TO_DECODER.put("DKW2012", RfLinkWH1080WeatherStationMessage::new);
+    }
+
+    private static void addMapping(Supplier<RfLinkMessage> supplier,
+            Function<RfLinkFrameFields, RfLinkMessage> decoder) {
+        RfLinkMessage m = supplier.get();
+        for (String key : m.keys()) {
+            KEY_TO_DECODER.put(key, decoder);
+        }
+        THINGTYPE_TO_SUPPLIER.put(m.getThingType(), supplier);
+    }
+
+    public static RfLinkMessage createMessage(RfLinkBaseMessage message) throws RfLinkException, RfLinkNotImpException {
+        return createMessage(message.values);
     }
 
-    private static void addMappingOfClass(Class _class) {
+    public static RfLinkMessage createMessage(String packet) throws RfLinkException, RfLinkNotImpException {
+        RfLinkFrameFields fields = new RfLinkFrameFields();
+        fields.parse(packet);
+        return createMessage(fields);
+    }
 
+    /**
+     * @return the message decoded from the already parsed fields of a frame
+     */
+    public static RfLinkMessage createMessage(RfLinkFrameFields fields) throws RfLinkException, RfLinkNotImpException {
+        Function<RfLinkFrameFields, RfLinkMessage> decoder = getDecoder(fields);
+        if (decoder == null) {
+            throw new RfLinkNotImpException("No message implementation found for packet " + fields.getFrame());
+        }
         try {
-            RfLinkMessage m = (RfLinkMessage) _class.newInstance();
+            return decoder.apply(fields);
+        } catch (RuntimeException e) {
+            logger.error("Exception: ", e);
+            throw new RfLinkException("unable to instanciate message object", e);
+        }
+    }
 
-            for (String key : m.keys()) {
-                KEY_TO_CLASS.put(key, _class);
-            }
-            THINGTYPE_TO_CLASS.put(m.getThingType(), _class);
+    private static Function<RfLinkFrameFields, RfLinkMessage> getDecoder(RfLinkFrameFields fields) {
+        String protocol = fields.getProtocol();
+        if (protocol == null || !fields.containsKey(KEY_ID)) {
+            return findDecoder(fields);
+        }
 
-        } catch (InstantiationException | IllegalAccessException e) {
+        int slot = (31 * protocol.hashCode() + fields.valueHash(KEY_ID)) & (DECODER_CACHE_SIZE - 1);
+        int keysHash = fields.keysHash();
+        DecoderCacheEntry entry = DECODER_CACHE[slot];
+        if (entry != null && entry.keysHash == keysHash && entry.protocol.equals(protocol)
+                && fields.valueEquals(KEY_ID, entry.id)) {
+            DECODER_CACHE_HITS.increment();
+            return entry.decoder;
+        }
 
+        DECODER_CACHE_MISSES.increment();
+        Function<RfLinkFrameFields, RfLinkMessage> decoder = findDecoder(fields);
+        if (decoder != null) {
+            DECODER_CACHE[slot] = new DecoderCacheEntry(protocol, fields.get(KEY_ID), keysHash, decoder);
         }
+        return decoder;
     }
 
-    public static RfLinkMessage createMessage(RfLinkBaseMessage message) throws RfLinkException, RfLinkNotImpException {
-        String packet = message.rawMessage;
-        if ((message.getDeviceName() != null) && (message.getDeviceName().equals("DKW2012"))) {
-            try {
-                Class<?> cl = RfLinkWH1080WeatherStationMessage.class;
-                Constructor<?> c = cl.getConstructor(String.class);
-                return (RfLinkMessage) c.newInstance(packet);
-            } catch (Exception e) {
-                logger.error("Exception: ", e);
-                throw new RfLinkException("unable to instanciate message object", e);
+    private static Function<RfLinkFrameFields, RfLinkMessage> findDecoder(RfLinkFrameFields fields) {
+        String protocol = fields.getProtocol();
+        if (protocol != null) {
+            Function<RfLinkFrameFields, RfLinkMessage> decoder = PROTOCOL_TO_DECODER.get(protocol);
+            if (decoder != null) {
+                return decoder;
             }
         }
-        for (String key : KEY_TO_CLASS.keySet()) {
-            if (message.values.containsKey(key)) {
-                try {
-                    Class<?> cl = KEY_TO_CLASS.get(key);
-                    Constructor<?> c = cl.getConstructor(String.class);
-                    return (RfLinkMessage) c.newInstance(packet);
-                } catch (Exception e) {
-                    logger.error("Exception: ", e);
-                    throw new RfLinkException("unable to instanciate message object", e);
-                }
+        for (Map.Entry<String, Function<RfLinkFrameFields, RfLinkMessage>> entry : KEY_TO_DECODER.entrySet()) {
+            if (fields.containsKey(entry.getKey())) {
+                return entry.getValue();
             }
         }
-        throw new RfLinkNotImpException("No message implementation found for packet " + packet.toString());
+        return null;
     }
 
-    public static RfLinkMessage createMessage(String packet) throws RfLinkException, RfLinkNotImpException {
-        return createMessage(new RfLinkBaseMessage(packet) {
-        });
+    /**
+     * @return the number of frames of all bridges whose decoder was found in the device cache
+     */
+    public static long getDecoderCacheHits() {
+        return DECODER_CACHE_HITS.sum();
+    }
+
+    /**
+     * @return the number of frames of all bridges whose decoder was searched in the dispatch tables
+     */
+    public static long getDecoderCacheMisses() {
+        return DECODER_CACHE_MISSES.sum();
     }
 
     public static RfLinkMessage createMessageForSendingToThing(ThingTypeUID thingType) throws RfLinkException {
-        if (THINGTYPE_TO_CLASS.containsKey(thingType)) {
-            try {
-                Class<?> cl = THINGTYPE_TO_CLASS.get(thingType);
-                Constructor<?> c = cl.getConstructor();
-                return (RfLinkMessage) c.newInstance();
-            } catch (Exception e) {
-                throw new RfLinkException("Unable to instanciate message object", e);
-            }
-        }
-        return null;
+        Supplier<RfLinkMessage> supplier = THINGTYPE_TO_SUPPLIER.get(thingType);
+        return supplier == null ? null : supplier.get();
     }
 }
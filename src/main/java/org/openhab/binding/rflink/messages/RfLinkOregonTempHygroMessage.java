@@ -103,15 +103,17 @@ public class RfLinkOregonTempHygroMessage extends RfLinkBaseMessage {
         encodeMessage(data);
     }
 
+    public RfLinkOregonTempHygroMessage(RfLinkFrameFields fields) {
+        encodeMessage(fields);
+    }
+
     @Override
     public ThingTypeUID getThingType() {
         return RfLinkBindingConstants.THING_TYPE_OREGONTEMPHYGRO;
     }
 
     @Override
-    public void encodeMessage(String data) {
-        super.encodeMessage(data);
-
+    protected void decodeValues() {
         if (values.containsKey(KEY_TEMPERATURE)) {
             temperature = RfLinkDataParser.parseHexaToSignedDecimal(values.get(KEY_TEMPERATURE));
         }
@@ -49,14 +49,17 @@ public class RfLinkRainMessage extends RfLinkBaseMessage {
         encodeMessage(data);
     }
 
+    public RfLinkRainMessage(RfLinkFrameFields fields) {
+        encodeMessage(fields);
+    }
+
     @Override
     public ThingTypeUID getThingType() {
         return RfLinkBindingConstants.THING_TYPE_RAIN;
     }
 
     @Override
-    public void encodeMessage(String data) {
-        super.encodeMessage(data);
+    protected void decodeValues() {
         if (values.containsKey(KEY_RAIN)) {
             rain = RfLinkDataParser.parseHexaToUnsignedInt(values.get(KEY_RAIN));
         }
@@ -51,6 +51,10 @@ public class RfLinkRtsMessage extends RfLinkBaseMessage {
         encodeMessage(data);
     }
 
+    public RfLinkRtsMessage(RfLinkFrameFields fields) {
+        encodeMessage(fields);
+    }
+
     @Override
     public ThingTypeUID getThingType() {
         return RfLinkBindingConstants.THING_TYPE_RTS;
@@ -65,11 +69,6 @@ public class RfLinkRtsMessage extends RfLinkBaseMessage {
         return str;
     }
 
-    @Override
-    public void encodeMessage(String data) {
-        super.encodeMessage(data);
-    }
-
     @Override
     public Collection<String> keys() {
         return KEYS;
@@ -61,6 +61,10 @@ public class RfLinkSwitchMessage extends RfLinkBaseMessage {
         encodeMessage(data);
     }
 
+    public RfLinkSwitchMessage(RfLinkFrameFields fields) {
+        encodeMessage(fields);
+    }
+
     @Override
     public ThingTypeUID getThingType() {
         return RfLinkBindingConstants.THING_TYPE_SWITCH;
@@ -78,9 +82,7 @@ public class RfLinkSwitchMessage extends RfLinkBaseMessage {
     }
 
     @Override
-    public void encodeMessage(String data) {
-        super.encodeMessage(data);
-
+    protected void decodeValues() {
         if (values.containsKey(KEY_CMD)) {
             command = RfLinkTypeUtils.getTypeFromStringValue(values.get(KEY_CMD));
             if (RfLinkTypeUtils.isNullOrUndef(command)) {
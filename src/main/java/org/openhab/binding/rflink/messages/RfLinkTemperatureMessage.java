@@ -45,15 +45,17 @@ public class RfLinkTemperatureMessage extends RfLinkBaseMessage {
         encodeMessage(data);
     }
 
+    public RfLinkTemperatureMessage(RfLinkFrameFields fields) {
+        encodeMessage(fields);
+    }
+
     @Override
     public ThingTypeUID getThingType() {
         return RfLinkBindingConstants.THING_TYPE_TEMPERATURE;
     }
 
     @Override
-    public void encodeMessage(String data) {
-        super.encodeMessage(data);
-
+    protected void decodeValues() {
         if (values.containsKey(KEY_TEMPERATURE)) {
             temperature = RfLinkDataParser.parseHexaToSignedDecimal(values.get(KEY_TEMPERATURE));
         }
@@ -104,14 +104,17 @@ public class RfLinkWH1080WeatherStationMessage extends RfLinkBaseMessage {
         encodeMessage(data);
     }
 
+    public RfLinkWH1080WeatherStationMessage(RfLinkFrameFields fields) {
+        encodeMessage(fields);
+    }
+
     @Override
     public ThingTypeUID getThingType() {
         return RfLinkBindingConstants.THING_TYPE_WH1080WEATHERSTATION;
     }
 
     @Override
-    public void encodeMessage(String data) {
-        super.encodeMessage(data);
+    protected void decodeValues() {
         if (values.containsKey(KEY_TEMPERATURE)) {
             temperature = RfLinkDataParser.parseHexaToSignedDecimal(values.get(KEY_TEMPERATURE));
         }
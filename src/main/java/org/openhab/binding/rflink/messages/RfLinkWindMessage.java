@@ -56,14 +56,17 @@ public class RfLinkWindMessage extends RfLinkBaseMessage {
         encodeMessage(data);
     }
 
+    public RfLinkWindMessage(RfLinkFrameFields fields) {
+        encodeMessage(fields);
+    }
+
     @Override
     public ThingTypeUID getThingType() {
         return RfLinkBindingConstants.THING_TYPE_WIND;
     }
 
     @Override
-    public void encodeMessage(String data) {
-        super.encodeMessage(data);
+    protected void decodeValues() {
         if (values.containsKey(KEY_WIND_SPEED)) {
             // should be DECIMAL
             windSpeed = RfLinkDataParser.parseHexaToUnsignedInt(values.get(KEY_WIND_SPEED));
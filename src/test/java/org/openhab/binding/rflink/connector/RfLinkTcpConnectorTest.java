@@ -0,0 +1,53 @@
+/**
+ * Copyright (c) 2010-2023 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.rflink.connector;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.net.InetSocketAddress;
+
+import org.junit.jupiter.api.Test;
+import org.openhab.binding.rflink.RfLinkBindingConstants;
+
+/**
+ * Tests the parsing of the gateway address of the {@link RfLinkTcpConnector}.
+ *
+ * @author Cyril Cauchois - Initial contribution
+ */
+public class RfLinkTcpConnectorTest {
+
+    @Test
+    public void hostWithAndWithoutPort() {
+        assertAddress("192.168.1.20", 1900, RfLinkTcpConnector.parseAddress("192.168.1.20:1900"));
+        assertAddress("192.168.1.20", RfLinkBindingConstants.TCP_PORT_DEFAULT,
+                RfLinkTcpConnector.parseAddress(" 192.168.1.20 "));
+    }
+
+    @Test
+    public void bracketedIPv6Address() {
+        assertAddress("fe80:0:0:0:0:0:0:1", 2000, RfLinkTcpConnector.parseAddress("[fe80::1]:2000"));
+        assertAddress("fe80:0:0:0:0:0:0:1", RfLinkBindingConstants.TCP_PORT_DEFAULT,
+                RfLinkTcpConnector.parseAddress("[fe80::1]"));
+    }
+
+    @Test
+    public void bareIPv6AddressHasTheDefaultPort() {
+        assertAddress("2001:db8:0:0:0:0:0:20", RfLinkBindingConstants.TCP_PORT_DEFAULT,
+                RfLinkTcpConnector.parseAddress("2001:db8::20"));
+    }
+
+    private static void assertAddress(String host, int port, InetSocketAddress address) {
+        assertEquals(host, address.getAddress().getHostAddress());
+        assertEquals(port, address.getPort());
+    }
+}
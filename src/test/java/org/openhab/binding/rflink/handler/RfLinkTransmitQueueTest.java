@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2010-2023 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.rflink.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openhab.binding.rflink.messages.RfLinkMessage;
+import org.openhab.binding.rflink.messages.RfLinkRawMessage;
+
+/**
+ * Tests the order of the commands of one device across the lanes of the {@link RfLinkTransmitQueue}, and the offline
+ * buffering of a message whose write fails.
+ *
+ * @author Cyril Cauchois - Initial contribution
+ */
+public class RfLinkTransmitQueueTest {
+
+    private final List<RfLinkMessage> transmitted = new CopyOnWriteArrayList<>();
+    private final CountDownLatch busy = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch failed = new CountDownLatch(1);
+    private volatile RfLinkMessage failing;
+    private RfLinkTransmitQueue queue;
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        queue = new RfLinkTransmitQueue("test", message -> {
+            if (message == failing) {
+                failing = null;
+                throw new IOException("Connection reset");
+            }
+            transmitted.add(message);
+            busy.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, (message, e) -> failed.countDown());
+        queue.start();
+        // keep the transmit thread busy so that the following commands are queued
+        queue.enqueue(RfLinkRawMessage.PING, RfLinkTransmitPriority.HOUSEKEEPING);
+        busy.await(5, TimeUnit.SECONDS);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        queue.stop();
+    }
+
+    @Test
+    public void offAfterOnLeavesTheDeviceOff() throws Exception {
+        RfLinkMessage on = new RfLinkRawMessage("10;NewKaku;00c142;1;ON;");
+        RfLinkMessage off = new RfLinkRawMessage("10;NewKaku;00c142;1;OFF;");
+        queue.enqueue(on, RfLinkTransmitPriority.INTERACTIVE, 1, "00c142-1/command", false);
+        CompletableFuture<Void> sent = queue.enqueue(off, RfLinkTransmitPriority.URGENT, 1, "00c142-1/command", false);
+        release.countDown();
+        sent.get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of(RfLinkRawMessage.PING, off), transmitted);
+    }
+
+    @Test
+    public void stopAfterUpStopsTheShutter() throws Exception {
+        RfLinkMessage up = new RfLinkRawMessage("10;BrelMotor;0f1a2b;1;UP;");
+        RfLinkMessage stop = new RfLinkRawMessage("10;BrelMotor;0f1a2b;1;STOP;");
+        queue.enqueue(up, RfLinkTransmitPriority.INTERACTIVE, 3, "0f1a2b-1/shutter", false);
+        CompletableFuture<Void> sent = queue.enqueue(stop, RfLinkTransmitPriority.URGENT, 1, "0f1a2b-1/shutter", false);
+        release.countDown();
+        sent.get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of(RfLinkRawMessage.PING, stop), transmitted);
+    }
+
+    @Test
+    public void offAfterDimmingLevelLeavesTheDeviceOff() throws Exception {
+        RfLinkMessage level = new RfLinkRawMessage("10;NewKaku;00c142;1;8;");
+        RfLinkMessage off = new RfLinkRawMessage("10;NewKaku;00c142;1;OFF;");
+        queue.enqueue(level, RfLinkTransmitPriority.INTERACTIVE, 1, "00c142-1/dimmingLevel", true);
+        CompletableFuture<Void> sent = queue.enqueue(off, RfLinkTransmitPriority.URGENT, 1, "00c142-1/command", false);
+        release.countDown();
+        sent.get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of(RfLinkRawMessage.PING, off), transmitted);
+    }
+
+    @Test
+    public void messageFailedByTheDisconnectionIsSentOnceResumed() throws Exception {
+        queue.setOfflineBuffer(10, 0, false);
+        RfLinkMessage on = new RfLinkRawMessage("10;NewKaku;00c142;1;ON;");
+        failing = on;
+        CompletableFuture<Void> sent = queue.enqueue(on, RfLinkTransmitPriority.INTERACTIVE);
+        release.countDown();
+        failed.await(5, TimeUnit.SECONDS);
+
+        assertFalse(sent.isDone());
+        queue.resume();
+        sent.get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of(RfLinkRawMessage.PING, on), transmitted);
+    }
+}